@@ -1,8 +1,6 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
 import java.text.ParseException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -15,36 +13,6 @@ import org.w3c.dom.NodeList;
  * @since 1.0.0
  */
 abstract class AbstractXmlParser {
-	/**
-	 * The pattern to use to detect when a variable should be substituted in the
-	 * pom
-	 * 
-	 * @since 1.0.0
-	 */
-	private static final Pattern SUBSTITUTION_PATTERN = Pattern.compile("\\$\\{([^}]+)\\}");
-
-	/**
-	 * Gets the replacement value for a substitution variable
-	 * 
-	 * @param key
-	 *            The key of the variable
-	 * @param pom
-	 *            The pom document
-	 * @return The value that it should be replaced with
-	 * @since 1.0.0
-	 * @throws ParseException
-	 *             If the variable could not be resolved
-	 */
-	private static String getReplacement(String key, Element pom) throws ParseException {
-		if (key.startsWith("project.")) {
-			return find(key.substring("project.".length()), pom, null);
-		} else if (key.startsWith("pom.")) {
-			return find(key.substring("pom.".length()), pom, null);
-		} else {
-			throw new ParseException(String.format("Unknown variable '%s'", key), -1);
-		}
-	}
-
 	/**
 	 * Replaces all the variables in a string of text
 	 * 
@@ -57,12 +25,48 @@ abstract class AbstractXmlParser {
 	 * @throws ParseException
 	 *             If the variable could not be resolved
 	 */
-	private static String replaceVariables(String text, Element pom) throws ParseException {
-		Matcher matcher = SUBSTITUTION_PATTERN.matcher(text);
-		while (matcher.find()) {
-			text = matcher.replaceFirst(getReplacement(matcher.group(1), pom));
+	private static String replaceVariables(String text, final Element pom) throws ParseException {
+		if (text.indexOf('$') < 0) {
+			return text;
 		}
-		return text;
+		return new PropertyInterpolator() {
+			@Override
+			protected String getValue(String key) {
+				String name;
+				if (key.startsWith("project.")) {
+					name = key.substring("project.".length());
+				} else if (key.startsWith("pom.")) {
+					name = key.substring("pom.".length());
+				} else {
+					NodeList list = pom.getElementsByTagName("properties");
+					for (int i = 0; i < list.getLength(); ++i) {
+						if (list.item(i).getParentNode() == pom) {
+							NodeList props = ((Element) list.item(i)).getElementsByTagName(key);
+							if (props.getLength() > 0) {
+								return props.item(0).getTextContent().trim();
+							}
+						}
+					}
+					return getEnvironmentValue(key);
+				}
+				Element node = pom;
+				if (name.startsWith("parent.")) {
+					NodeList list = pom.getElementsByTagName("parent");
+					if (list.getLength() == 0) {
+						return null;
+					}
+					node = (Element) list.item(0);
+					name = name.substring("parent.".length());
+				}
+				NodeList list = node.getChildNodes();
+				for (int i = 0; i < list.getLength(); ++i) {
+					if (list.item(i).getNodeName().equals(name)) {
+						return list.item(i).getTextContent().trim();
+					}
+				}
+				return null;
+			}
+		}.interpolate(text);
 	}
 
 	/**
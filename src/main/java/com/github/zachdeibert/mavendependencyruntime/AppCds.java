@@ -0,0 +1,373 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the application in a child JVM that uses a class data sharing archive
+ * of the resolved classpath. The first launch for a classpath records the
+ * classes that the application loads and dumps an archive of them into the
+ * cache, and later launches map that archive instead of loading and verifying
+ * the same classes again. This is enabled with the
+ * <code>com.github.zachdeibert.mavendependencyruntime.cds</code> system
+ * property or the <code>MAVEN_DEPENDENCY_RUNTIME_CDS</code> environment
+ * variable, and needs Java 11 or newer, which no longer needs
+ * <code>-XX:+UseAppCDS</code> to archive the classes of the application.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class AppCds {
+	/**
+	 * If the application should be run with a class data sharing archive
+	 * 
+	 * @since 1.0.0
+	 */
+	static final boolean ENABLED = "true".equals(MavenDependencies
+			.getSetting("com.github.zachdeibert.mavendependencyruntime.cds", "MAVEN_DEPENDENCY_RUNTIME_CDS", "false"));
+	/**
+	 * The system property that is set in the child JVM, whose classpath
+	 * already contains all of the dependencies
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String CHILD_PROPERTY = "com.github.zachdeibert.mavendependencyruntime.cds.child";
+	/**
+	 * The directory to store the archives in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "cds");
+	/**
+	 * The number of milliseconds to give the child JVM to exit after this JVM
+	 * is shut down before it is killed
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final long DESTROY_TIMEOUT = 5000;
+	/**
+	 * The prefixes of the JVM arguments that change the layout of the heap or
+	 * of the classes, so an archive only matches the JVM it was dumped with if
+	 * they are the same
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String[] ARCHIVE_ARGUMENTS = { "-Xmx", "-XX:MaxHeapSize=", "-XX:ObjectAlignmentInBytes=",
+			"-XX:+UseCompressedOops", "-XX:-UseCompressedOops", "-XX:+UseCompressedClassPointers",
+			"-XX:-UseCompressedClassPointers", "-Xbootclasspath/a:" };
+	/**
+	 * The JVM arguments of this JVM that the archive depends on
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final List<String> ARCHIVE_FLAGS = getArchiveArguments();
+	/**
+	 * The classpath of the child JVM
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String classpath;
+	/**
+	 * The archive for the classpath
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File archive;
+	/**
+	 * The list of classes that are recorded for the archive
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File classList;
+
+	/**
+	 * Checks if this JVM is the child JVM that was launched by
+	 * {@link AppCds#launch(String[])}, so its classpath already contains all
+	 * of the dependencies
+	 * 
+	 * @return If this is the child JVM
+	 * @since 1.0.0
+	 */
+	static boolean isChild() {
+		return Boolean.getBoolean(CHILD_PROPERTY);
+	}
+
+	/**
+	 * Checks if the runtime supports application class data sharing
+	 * 
+	 * @return If it is supported
+	 * @since 1.0.0
+	 */
+	static boolean isSupported() {
+		String version = System.getProperty("java.specification.version", "");
+		if (version.startsWith("1.")) {
+			return false;
+		}
+		try {
+			return Integer.parseInt(version) >= 11;
+		} catch (NumberFormatException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Finds the JVM arguments of this JVM that the archive depends on, which
+	 * are the ones that change the layout of the heap or of the classes and
+	 * the ones that select the garbage collector
+	 * 
+	 * @return The arguments, in the order they were given
+	 * @since 1.0.0
+	 */
+	private static List<String> getArchiveArguments() {
+		List<String> flags = new ArrayList<String>();
+		for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+			boolean match = (arg.startsWith("-XX:+Use") || arg.startsWith("-XX:-Use")) && arg.endsWith("GC");
+			for (String prefix : ARCHIVE_ARGUMENTS) {
+				match |= arg.startsWith(prefix);
+			}
+			if (match) {
+				flags.add(arg);
+			}
+		}
+		return flags;
+	}
+
+	/**
+	 * Computes the key that the archive for a classpath is stored under, which
+	 * changes whenever the runtime, the JVM arguments that the archive depends
+	 * on, or any of the files on the classpath changes
+	 * 
+	 * @param classpath
+	 *            The files on the classpath
+	 * @return The key
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static String computeKey(List<File> classpath) throws IOException {
+		MessageDigest digest = CacheFiles.createDigest();
+		digest.update(System.getProperty("java.home", "").getBytes(CacheFiles.UTF8));
+		digest.update(System.getProperty("java.vm.version", "").getBytes(CacheFiles.UTF8));
+		for (String flag : ARCHIVE_FLAGS) {
+			digest.update(flag.getBytes(CacheFiles.UTF8));
+			digest.update((byte) 0);
+		}
+		for (File file : classpath) {
+			digest.update(file.getAbsolutePath().getBytes(CacheFiles.UTF8));
+			digest.update(Long.toString(file.length()).getBytes(CacheFiles.UTF8));
+			digest.update(Long.toString(file.lastModified()).getBytes(CacheFiles.UTF8));
+		}
+		return CacheFiles.toHex(digest.digest());
+	}
+
+	/**
+	 * Gets the path of the java executable of this runtime
+	 * 
+	 * @return The path
+	 * @since 1.0.0
+	 */
+	private static String getJava() {
+		File bin = new File(System.getProperty("java.home"), "bin");
+		File java = new File(bin, "java.exe");
+		if (!java.isFile()) {
+			java = new File(bin, "java");
+		}
+		return java.getPath();
+	}
+
+	/**
+	 * Checks if a process has exited
+	 * 
+	 * @param process
+	 *            The process
+	 * @return If it has exited
+	 * @since 1.0.0
+	 */
+	private static boolean hasExited(Process process) {
+		try {
+			process.exitValue();
+			return true;
+		} catch (IllegalThreadStateException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Stops a process, and kills it if it does not exit within the
+	 * {@link AppCds#DESTROY_TIMEOUT}
+	 * 
+	 * @param process
+	 *            The process
+	 * @since 1.0.0
+	 */
+	private static void destroy(Process process) {
+		process.destroy();
+		long end = System.currentTimeMillis() + DESTROY_TIMEOUT;
+		try {
+			while (!hasExited(process) && System.currentTimeMillis() < end) {
+				Thread.sleep(50);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		if (!hasExited(process)) {
+			try {
+				Process.class.getMethod("destroyForcibly").invoke(process);
+			} catch (ReflectiveOperationException ex) {
+			} catch (RuntimeException ex) {
+			}
+		}
+	}
+
+	/**
+	 * Runs a process that shares the standard streams of this JVM and waits
+	 * for it to exit. If this JVM is shut down first (for example by a
+	 * signal), the process is stopped as well so that it is not left running
+	 * on its own.
+	 * 
+	 * @param command
+	 *            The command to run
+	 * @return The exit code of the process
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the process could not be started
+	 */
+	private static int run(List<String> command) throws IOException {
+		final Process process = new ProcessBuilder(command).inheritIO().start();
+		Thread hook = new Thread("maven-dependency-runtime-cds-shutdown") {
+			@Override
+			public void run() {
+				AppCds.destroy(process);
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(hook);
+		try {
+			return process.waitFor();
+		} catch (InterruptedException ex) {
+			destroy(process);
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the application", ex);
+		} finally {
+			try {
+				Runtime.getRuntime().removeShutdownHook(hook);
+			} catch (IllegalStateException ex) {
+				// Already shutting down, so the hook is running
+			}
+		}
+	}
+
+	/**
+	 * Dumps the archive from the list of classes that was recorded, with the
+	 * same JVM arguments that the child JVMs that use it are run with
+	 * 
+	 * @param classes
+	 *            The recorded list of classes
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the archive could not be dumped
+	 */
+	private void dump(File classes) throws IOException {
+		File tmp = CacheFiles.createTemp(archive);
+		try {
+			List<String> command = new ArrayList<String>();
+			command.add(getJava());
+			command.addAll(ARCHIVE_FLAGS);
+			command.add("-Xshare:dump");
+			command.add("-XX:SharedClassListFile=".concat(classes.getAbsolutePath()));
+			command.add("-XX:SharedArchiveFile=".concat(tmp.getAbsolutePath()));
+			command.add("-cp");
+			command.add(classpath);
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			try {
+				CacheFiles.readFully(process.getInputStream());
+				if (process.waitFor() != 0) {
+					throw new IOException("Unable to dump the class data sharing archive");
+				}
+			} catch (InterruptedException ex) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while dumping the class data sharing archive", ex);
+			}
+			CacheFiles.moveIntoPlace(tmp, archive);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Runs the application in a child JVM. If there is already an archive for
+	 * the classpath the child uses it; otherwise the child records the classes
+	 * it loads and the archive is dumped after it exits.
+	 * 
+	 * @param args
+	 *            The command line parameters to the application
+	 * @return The exit code of the child JVM
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the child JVM could not be started
+	 */
+	int launch(String[] args) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(getJava());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		command.add("-D".concat(CHILD_PROPERTY).concat("=true"));
+		File classes = null;
+		if (archive.isFile()) {
+			command.add("-Xshare:auto");
+			command.add("-XX:SharedArchiveFile=".concat(archive.getAbsolutePath()));
+		} else {
+			classes = CacheFiles.createTemp(classList);
+			command.add("-XX:DumpLoadedClassList=".concat(classes.getAbsolutePath()));
+		}
+		command.add("-cp");
+		command.add(classpath);
+		command.add(Main.class.getName());
+		command.addAll(Arrays.asList(args));
+		try {
+			int code = run(command);
+			if (classes != null && code == 0 && classes.length() > 0) {
+				try {
+					dump(classes);
+				} catch (IOException ex) {
+					if (MavenDependencies.ENABLE_LOGGING) {
+						ex.printStackTrace();
+					}
+				}
+			}
+			return code;
+		} finally {
+			if (classes != null) {
+				classes.delete();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new launcher for a classpath
+	 * 
+	 * @param classpath
+	 *            The files on the classpath, starting with the ones on the
+	 *            classpath of this JVM and followed by the dependencies
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	AppCds(List<File> classpath) throws IOException {
+		StringBuilder str = new StringBuilder();
+		for (File file : classpath) {
+			if (str.length() > 0) {
+				str.append(File.pathSeparatorChar);
+			}
+			str.append(file.getAbsolutePath());
+		}
+		this.classpath = str.toString();
+		String key = computeKey(classpath);
+		archive = new File(DIR, key.concat(".jsa"));
+		classList = new File(DIR, key.concat(".classlist"));
+	}
+}
@@ -0,0 +1,204 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks that coordinate the download of each artifact between all of
+ * the threads and processes sharing the cache directory
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class ArtifactLocks {
+	/**
+	 * The number of lock stripes (must be a power of two)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int STRIPES = 64;
+	/**
+	 * The longest time to sleep between attempts to take a lock that is held
+	 * by another process, in milliseconds. The file lock is polled instead of
+	 * blocking on it, because the kernel tracks file locks per process and
+	 * would report a false deadlock when several processes each have multiple
+	 * threads waiting on different stripes.
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final long MAX_BACKOFF = 50;
+	/**
+	 * The directory the lock files are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "locks");
+	/**
+	 * The locks that coordinate the threads in this JVM, since file locks are
+	 * held on behalf of the whole JVM
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ReentrantLock[] THREAD_LOCKS = new ReentrantLock[STRIPES];
+	/**
+	 * The total time spent waiting for locks, in nanoseconds
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final AtomicLong WAIT_TIME = new AtomicLong();
+	/**
+	 * The number of times a lock was already held when it was requested
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final AtomicLong CONTENTIONS = new AtomicLong();
+
+	static {
+		for (int i = 0; i < STRIPES; ++i) {
+			THREAD_LOCKS[i] = new ReentrantLock();
+		}
+	}
+
+	/**
+	 * A lock that is held on one stripe
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class Lock {
+		/**
+		 * The lock held for the threads in this JVM
+		 * 
+		 * @since 1.0.0
+		 */
+		private final ReentrantLock threadLock;
+		/**
+		 * The file the process lock is held on
+		 * 
+		 * @since 1.0.0
+		 */
+		private final RandomAccessFile file;
+
+		/**
+		 * Releases the lock
+		 * 
+		 * @since 1.0.0
+		 */
+		void release() {
+			try {
+				file.close();
+			} catch (IOException ex) {
+			} finally {
+				threadLock.unlock();
+			}
+		}
+
+		/**
+		 * Creates a new held lock
+		 * 
+		 * @param threadLock
+		 *            The lock held for the threads in this JVM
+		 * @param file
+		 *            The file the process lock is held on
+		 * @since 1.0.0
+		 */
+		private Lock(ReentrantLock threadLock, RandomAccessFile file) {
+			this.threadLock = threadLock;
+			this.file = file;
+		}
+	}
+
+	/**
+	 * Gets the total time threads have spent waiting for another thread or
+	 * process to finish downloading an artifact
+	 * 
+	 * @return The time in nanoseconds
+	 * @since 1.0.0
+	 */
+	static long getWaitTime() {
+		return WAIT_TIME.get();
+	}
+
+	/**
+	 * Gets the number of times a thread had to wait for another thread or
+	 * process to finish downloading an artifact
+	 * 
+	 * @return The number of contended lock requests
+	 * @since 1.0.0
+	 */
+	static long getContentions() {
+		return CONTENTIONS.get();
+	}
+
+	/**
+	 * Acquires the lock for a dependency, waiting for any other thread or
+	 * process that currently holds it
+	 * 
+	 * @param dep
+	 *            The dependency to lock
+	 * @return The held lock, which must be released by the caller
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static Lock acquire(Dependency dep) throws IOException {
+		int stripe = (dep.toString().hashCode() & 0x7FFFFFFF) & (STRIPES - 1);
+		ReentrantLock threadLock = THREAD_LOCKS[stripe];
+		long start = 0;
+		if (!threadLock.tryLock()) {
+			start = System.nanoTime();
+			threadLock.lock();
+		}
+		try {
+			DIR.mkdirs();
+			RandomAccessFile file = new RandomAccessFile(new File(DIR, String.format("%02d.lock", stripe)), "rw");
+			try {
+				FileChannel channel = file.getChannel();
+				for (long backoff = 1; channel.tryLock() == null; backoff = Math.min(backoff * 2, MAX_BACKOFF)) {
+					if (start == 0) {
+						start = System.nanoTime();
+					}
+					try {
+						Thread.sleep(backoff);
+					} catch (InterruptedException ex) {
+						Thread.currentThread().interrupt();
+						throw new IOException(String.format("Interrupted while waiting for the lock on %s", dep), ex);
+					}
+				}
+			} catch (IOException ex) {
+				file.close();
+				throw ex;
+			} catch (RuntimeException ex) {
+				file.close();
+				throw ex;
+			}
+			if (start != 0) {
+				long waited = System.nanoTime() - start;
+				WAIT_TIME.addAndGet(waited);
+				CONTENTIONS.incrementAndGet();
+				if (MavenDependencies.ENABLE_LOGGING) {
+					System.out.printf("Waited %d ms for the lock on %s\n", waited / 1000000, dep);
+				}
+			}
+			return new Lock(threadLock, file);
+		} catch (IOException ex) {
+			threadLock.unlock();
+			throw ex;
+		} catch (RuntimeException ex) {
+			threadLock.unlock();
+			throw ex;
+		}
+	}
+
+	/**
+	 * This class should never be instantiated
+	 * 
+	 * @since 1.0.0
+	 */
+	private ArtifactLocks() {
+	}
+}
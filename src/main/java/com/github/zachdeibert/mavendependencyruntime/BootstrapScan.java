@@ -0,0 +1,216 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * The metadata that is needed to launch the application. This includes the
+ * manifest of the jar that the application was launched from, and the premains
+ * that are listed and the poms that are embedded in every jar and directory on
+ * the system classpath, which are found through the cached indexes of
+ * {@link ClassPathScanner} instead of by opening each jar again.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class BootstrapScan {
+	/**
+	 * The directory that the lists of premains are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PREMAINS = "com/github/zachdeibert/mavendependencyruntime/premains";
+	/**
+	 * The directory that the embedded poms are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String POMS = "META-INF/maven";
+	/**
+	 * The result of the scan, or <code>null</code> if it has not been run yet
+	 * 
+	 * @since 1.0.0
+	 */
+	private static BootstrapScan scan;
+	/**
+	 * The manifest of the jar, or <code>null</code> if it does not have one
+	 * 
+	 * @since 1.0.0
+	 */
+	private Manifest manifest;
+	/**
+	 * The premains that are listed in the jar
+	 * 
+	 * @since 1.0.0
+	 */
+	private final PremainSchedule premains;
+	/**
+	 * The contents of the embedded poms, keyed by their paths
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, byte[]> poms;
+
+	/**
+	 * Gets the metadata of the application, scanning the classpath the first
+	 * time this is called
+	 * 
+	 * @return The scan
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the classpath could not be read
+	 */
+	static synchronized BootstrapScan get() throws IOException {
+		if (scan == null) {
+			scan = new BootstrapScan(locate());
+		}
+		return scan;
+	}
+
+	/**
+	 * Finds the jar that the application was launched from with
+	 * <code>-jar</code>, which is then the only entry of the system classpath
+	 * 
+	 * @return The jar, or <code>null</code> if the application was not
+	 *         launched from a jar
+	 * @since 1.0.0
+	 */
+	private static File locate() {
+		String classpath = System.getProperty("java.class.path", "");
+		if (!classpath.isEmpty() && classpath.indexOf(File.pathSeparatorChar) < 0) {
+			File file = new File(classpath);
+			if (file.isFile()) {
+				return file;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads a list of premains into the schedule
+	 * 
+	 * @param name
+	 *            The name of the list
+	 * @param stream
+	 *            The stream containing the list
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private void readPremains(String name, InputStream stream) throws IOException {
+		premains.add(new PremainSchedule.Step(name, stream));
+	}
+
+	/**
+	 * Reads the manifest of the jar that the application was launched from
+	 * 
+	 * @param file
+	 *            The jar, or <code>null</code> to use the first manifest on
+	 *            the system classpath instead
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the manifest could not be read
+	 */
+	private void readManifest(File file) throws IOException {
+		if (file != null) {
+			JarFile jar = new JarFile(file);
+			try {
+				manifest = jar.getManifest();
+			} finally {
+				jar.close();
+			}
+			return;
+		}
+		InputStream stream = ClassLoader.getSystemResourceAsStream(JarFile.MANIFEST_NAME);
+		if (stream != null) {
+			try {
+				manifest = new Manifest(stream);
+			} finally {
+				stream.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads the premains and the embedded poms from all of the jars and
+	 * directories on the system classpath
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private void scanClasspath() throws IOException {
+		for (String premain : ClassPathScanner.listSystemResources(PREMAINS)) {
+			InputStream stream = ClassLoader.getSystemResourceAsStream(PREMAINS.concat("/").concat(premain));
+			if (stream != null) {
+				readPremains(premain, stream);
+			}
+		}
+		for (String group : ClassPathScanner.listSystemResources(POMS)) {
+			for (String artifact : ClassPathScanner.listSystemResources(POMS.concat("/").concat(group))) {
+				String path = String.format("%s/%s/%s/pom.xml", POMS, group, artifact);
+				InputStream stream = ClassLoader.getSystemResourceAsStream(path);
+				if (stream != null) {
+					try {
+						poms.put(path, CacheFiles.readFully(stream));
+					} finally {
+						stream.close();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the manifest of the jar
+	 * 
+	 * @return The manifest, or <code>null</code> if it does not have one
+	 * @since 1.0.0
+	 */
+	Manifest getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * Gets the premains that are listed on the classpath
+	 * 
+	 * @return The schedule to run the premains with
+	 * @since 1.0.0
+	 */
+	PremainSchedule getPremains() {
+		return premains;
+	}
+
+	/**
+	 * Gets the poms that are embedded in the jars on the classpath
+	 * 
+	 * @return The contents of the poms, keyed by their paths
+	 * @since 1.0.0
+	 */
+	Map<String, byte[]> getPoms() {
+		return Collections.unmodifiableMap(poms);
+	}
+
+	/**
+	 * Scans the classpath
+	 * 
+	 * @param jar
+	 *            The jar that the application was launched from, or
+	 *            <code>null</code> if it was not launched from a jar
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private BootstrapScan(File jar) throws IOException {
+		premains = new PremainSchedule();
+		poms = new LinkedHashMap<String, byte[]>();
+		readManifest(jar);
+		scanClasspath();
+	}
+}
@@ -0,0 +1,307 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helper methods for the files in the local cache. Files are written so that
+ * they are either completely written or not there at all, the binary cache
+ * files all start with a magic number and a format version, and the names of
+ * cache files are made from SHA-1 hashes.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class CacheFiles {
+	/**
+	 * The maximum number of bytes to transfer into a file at once
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final long TRANSFER_SIZE = 1 << 20;
+	/**
+	 * The charset that strings are hashed in
+	 * 
+	 * @since 1.0.0
+	 */
+	static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Reads the contents of a binary cache file after its header
+	 * 
+	 * @author Zach Deibert
+	 * @param <T>
+	 *            The type of the contents
+	 * @since 1.0.0
+	 */
+	interface BinaryReader<T> {
+		/**
+		 * Reads the contents
+		 * 
+		 * @param in
+		 *            The stream to read from
+		 * @return The contents, or <code>null</code> if they are not valid
+		 *         any more
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		T read(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Writes the contents of a binary cache file after its header
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	interface BinaryWriter {
+		/**
+		 * Writes the contents
+		 * 
+		 * @param out
+		 *            The stream to write to
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * Reads an entire stream into memory
+	 * 
+	 * @param stream
+	 *            The stream to read
+	 * @return The contents of the stream
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static byte[] readFully(InputStream stream) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int len; (len = stream.read(buffer)) > 0; out.write(buffer, 0, len))
+			;
+		return out.toByteArray();
+	}
+
+	/**
+	 * Converts a byte array into a hexadecimal string
+	 * 
+	 * @param bytes
+	 *            The bytes to convert
+	 * @return The hexadecimal string
+	 * @since 1.0.0
+	 */
+	static String toHex(byte[] bytes) {
+		StringBuilder str = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			str.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return str.toString();
+	}
+
+	/**
+	 * Creates the digest that the names of cache files are computed with
+	 * 
+	 * @return The digest
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the runtime does not support SHA-1
+	 */
+	static MessageDigest createDigest() throws IOException {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException("Unable to compute the name of a cache file", ex);
+		}
+	}
+
+	/**
+	 * Hashes a string into the name of a cache file
+	 * 
+	 * @param str
+	 *            The string
+	 * @return The hexadecimal hash of the string
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the runtime does not support SHA-1
+	 */
+	static String hash(String str) throws IOException {
+		return toHex(createDigest().digest(str.getBytes(UTF8)));
+	}
+
+	/**
+	 * Reads a binary cache file. A file that does not exist, was written with
+	 * another format or is cut short or corrupt is treated as not being
+	 * there.
+	 * 
+	 * @param <T>
+	 *            The type of the contents
+	 * @param file
+	 *            The file
+	 * @param magic
+	 *            The magic number the file has to start with
+	 * @param version
+	 *            The format version the file has to have
+	 * @param reader
+	 *            The reader of the contents
+	 * @return The contents, or <code>null</code> if there is no valid file
+	 * @since 1.0.0
+	 */
+	static <T> T read(File file, int magic, int version, BinaryReader<T> reader) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != magic || in.readInt() != version) {
+					return null;
+				}
+				return reader.read(in);
+			} finally {
+				in.close();
+			}
+		} catch (FileNotFoundException ex) {
+			return null;
+		} catch (EOFException ex) {
+			return null;
+		} catch (IOException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+			return null;
+		} catch (RuntimeException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes a binary cache file, starting with its magic number and format
+	 * version
+	 * 
+	 * @param file
+	 *            The file
+	 * @param magic
+	 *            The magic number of the file
+	 * @param version
+	 *            The format version of the file
+	 * @param writer
+	 *            The writer of the contents
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static void write(File file, int magic, int version, BinaryWriter writer) throws IOException {
+		File tmp = createTemp(file);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(magic);
+				out.writeInt(version);
+				writer.write(out);
+			} finally {
+				out.close();
+			}
+			moveIntoPlace(tmp, file);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Creates a temporary file next to the file it will replace, so that it
+	 * can be renamed into place
+	 * 
+	 * @param target
+	 *            The file that will be replaced
+	 * @return The temporary file
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static File createTemp(File target) throws IOException {
+		File dir = target.getParentFile();
+		dir.mkdirs();
+		return File.createTempFile(target.getName(), ".part", dir);
+	}
+
+	/**
+	 * Moves a completely written temporary file into place, replacing any file
+	 * that was there before
+	 * 
+	 * @param tmp
+	 *            The temporary file
+	 * @param target
+	 *            The file to replace
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static void moveIntoPlace(File tmp, File target) throws IOException {
+		try {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException ex) {
+			Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Saves the contents of a stream into a file. The data is transferred
+	 * through channels into a temporary file, which is then renamed into place,
+	 * so an interrupted transfer never leaves a truncated file behind.
+	 * 
+	 * @param ins
+	 *            The stream to read from (it is not closed)
+	 * @param out
+	 *            The file to save the contents to
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static void save(InputStream ins, File out) throws IOException {
+		File tmp = createTemp(out);
+		try {
+			FileOutputStream outs = new FileOutputStream(tmp);
+			try {
+				FileChannel channel = outs.getChannel();
+				ReadableByteChannel src = ins instanceof FileInputStream ? ((FileInputStream) ins).getChannel()
+						: Channels.newChannel(ins);
+				for (long pos = 0, len; (len = channel.transferFrom(src, pos, TRANSFER_SIZE)) > 0; pos += len)
+					;
+			} finally {
+				outs.close();
+			}
+			moveIntoPlace(tmp, out);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * This class should never be instantiated
+	 * 
+	 * @since 1.0.0
+	 */
+	private CacheFiles() {
+	}
+}
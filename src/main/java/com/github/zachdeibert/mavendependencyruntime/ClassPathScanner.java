@@ -1,24 +1,902 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.URI;
+import java.net.MalformedURLException;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLDecoder;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
- * A class that scans through the classpath for certain files
+ * A class that scans through the classpath for certain files. Every root of
+ * the classpath is searched, not only the first one that has the folder. The
+ * entries of each jar are indexed in a prefix tree, so listing a folder only
+ * takes time proportional to the number of resources in it. The indexes are
+ * kept for the rest of the life of the JVM and are also stored in the cache
+ * directory, keyed by the size and modification time of the jar, so that
+ * later runs do not have to read the jars again. The roots of the classpath of
+ * each class loader are also kept, together with the indexes of its jars, and
+ * are only found again when the urls of the class loader change. Directories
+ * on the classpath are listed directly from the file system, so they are
+ * always current. The packages of each artifact whose jar is downloaded are
+ * stored next to the indexes as well, so that the jar of an artifact that has
+ * not been downloaded yet can be picked by the classes that it contains.
  * 
  * @author Zach Deibert
  * @since 1.0.0
  */
 public class ClassPathScanner {
+	/**
+	 * The magic number at the start of every stored index
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int MAGIC = 0x4d445249;
+	/**
+	 * The version of the stored index file format
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int FORMAT_VERSION = 1;
+	/**
+	 * The magic number at the start of every stored list of the packages of
+	 * an artifact
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int PACKAGES_MAGIC = 0x4d445250;
+	/**
+	 * The version of the stored packages file format
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int PACKAGES_FORMAT_VERSION = 1;
+	/**
+	 * The directory to store the indexes of jars in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "index");
+	/**
+	 * The indexes of the jars that have been scanned by this JVM
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ConcurrentMap<File, Index> INDEXES = new ConcurrentHashMap<File, Index>();
+	/**
+	 * The roots of the classpath of each class loader that has been scanned
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Map<ClassLoader, Roots> ROOTS = Collections
+			.synchronizedMap(new WeakHashMap<ClassLoader, Roots>());
+	/**
+	 * The packages of the artifacts that have been looked up by this JVM,
+	 * keyed by <code>groupId:artifactId</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ConcurrentMap<String, Packages> PACKAGES = new ConcurrentHashMap<String, Packages>();
+	/**
+	 * The packages of an artifact that has never been downloaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Packages NO_PACKAGES = new Packages(null, Collections.<String>emptySet());
+
+	/**
+	 * A node in the prefix tree of the entries of a jar, which is a folder or
+	 * a file
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Node {
+		/**
+		 * The entries in this folder, keyed by name, or <code>null</code> if
+		 * it does not have any
+		 * 
+		 * @since 1.0.0
+		 */
+		private Map<String, Node> children;
+
+		/**
+		 * Gets an entry in this folder
+		 * 
+		 * @param name
+		 *            The name of the entry
+		 * @param create
+		 *            If the entry should be created if it does not exist
+		 * @return The entry, or <code>null</code> if it does not exist and
+		 *         was not created
+		 * @since 1.0.0
+		 */
+		Node getChild(String name, boolean create) {
+			Node child = children == null ? null : children.get(name);
+			if (child == null && create) {
+				if (children == null) {
+					children = new LinkedHashMap<String, Node>();
+				}
+				child = new Node();
+				children.put(name, child);
+			}
+			return child;
+		}
+
+		/**
+		 * Finds a folder inside of this folder
+		 * 
+		 * @param path
+		 *            The path of the folder, relative to this folder
+		 * @return The folder, or <code>null</code> if it does not exist
+		 * @since 1.0.0
+		 */
+		Node find(String path) {
+			Node node = this;
+			for (int start = 0; node != null && start < path.length();) {
+				int end = path.indexOf('/', start);
+				if (end < 0) {
+					end = path.length();
+				}
+				node = node.getChild(path.substring(start, end), false);
+				start = end + 1;
+			}
+			return node;
+		}
+
+		/**
+		 * Adds the path of an entry to the tree
+		 * 
+		 * @param path
+		 *            The path of the entry, relative to this folder
+		 * @since 1.0.0
+		 */
+		void add(String path) {
+			Node node = this;
+			for (int start = 0; start < path.length();) {
+				int end = path.indexOf('/', start);
+				if (end < 0) {
+					end = path.length();
+				}
+				node = node.getChild(path.substring(start, end), true);
+				start = end + 1;
+			}
+		}
+
+		/**
+		 * Writes this node and all of the nodes under it
+		 * 
+		 * @param out
+		 *            The stream to write to
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		void write(DataOutputStream out) throws IOException {
+			if (children == null) {
+				out.writeInt(0);
+			} else {
+				out.writeInt(children.size());
+				for (Map.Entry<String, Node> child : children.entrySet()) {
+					out.writeUTF(child.getKey());
+					child.getValue().write(out);
+				}
+			}
+		}
+
+		/**
+		 * Reads a node and all of the nodes under it
+		 * 
+		 * @param in
+		 *            The stream to read from
+		 * @return The node
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		static Node read(DataInputStream in) throws IOException {
+			Node node = new Node();
+			int count = in.readInt();
+			if (count > 0) {
+				node.children = new LinkedHashMap<String, Node>();
+				for (int i = 0; i < count; ++i) {
+					node.children.put(in.readUTF(), read(in));
+				}
+			}
+			return node;
+		}
+	}
+
+	/**
+	 * The index of the entries of a jar
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Index {
+		/**
+		 * The size of the jar when it was indexed
+		 * 
+		 * @since 1.0.0
+		 */
+		private final long size;
+		/**
+		 * The modification time of the jar when it was indexed
+		 * 
+		 * @since 1.0.0
+		 */
+		private final long modified;
+		/**
+		 * The root of the prefix tree of the entries
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Node root;
+
+		/**
+		 * Checks if the index is still up to date with a jar
+		 * 
+		 * @param jar
+		 *            The jar
+		 * @return If the jar has not changed since it was indexed
+		 * @since 1.0.0
+		 */
+		boolean matches(File jar) {
+			return jar.length() == size && jar.lastModified() == modified;
+		}
+
+		/**
+		 * Creates a new index
+		 * 
+		 * @param size
+		 *            The size of the jar when it was indexed
+		 * @param modified
+		 *            The modification time of the jar when it was indexed
+		 * @param root
+		 *            The root of the prefix tree of the entries
+		 * @since 1.0.0
+		 */
+		Index(long size, long modified, Node root) {
+			this.size = size;
+			this.modified = modified;
+			this.root = root;
+		}
+	}
+
+	/**
+	 * The roots of the classpath of a class loader
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Roots {
+		/**
+		 * The urls of the class loader and its parents when the roots were
+		 * found
+		 * 
+		 * @see ClassPathScanner#getSignature(List)
+		 * @since 1.0.0
+		 */
+		private final List<Object> signature;
+		/**
+		 * The jars and directories, in the order the class loader searches
+		 * them
+		 * 
+		 * @since 1.0.0
+		 */
+		private final List<File> files;
+		/**
+		 * The indexes of the roots that are jars
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Map<File, Index> indexes;
+		/**
+		 * The folders that the class loader has already been asked for, so
+		 * roots that it does not list have already been found for them
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Set<String> searched;
+
+		/**
+		 * Creates a new set of roots
+		 * 
+		 * @param signature
+		 *            The urls of the class loader and its parents
+		 * @param files
+		 *            The jars and directories, in the order the class loader
+		 *            searches them
+		 * @param indexes
+		 *            The indexes of the roots that are jars
+		 * @param searched
+		 *            The folders that the class loader has already been asked
+		 *            for
+		 * @since 1.0.0
+		 */
+		Roots(List<Object> signature, List<File> files, Map<File, Index> indexes, Set<String> searched) {
+			this.signature = signature;
+			this.files = files;
+			this.indexes = indexes;
+			this.searched = searched;
+		}
+	}
+
+	/**
+	 * The folders that contain files in the jar of an artifact
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class Packages {
+		/**
+		 * The version of the artifact that the jar was downloaded for, or
+		 * <code>null</code> if it has never been downloaded
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String version;
+		/**
+		 * The paths of the folders (without a trailing <code>/</code>)
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Set<String> dirs;
+
+		/**
+		 * Checks if these are the packages of a version of the artifact, so a
+		 * folder that is not in them is not in its jar either
+		 * 
+		 * @param dep
+		 *            The version of the artifact
+		 * @return If the jar was downloaded for that version
+		 * @since 1.0.0
+		 */
+		boolean isOf(Dependency dep) {
+			return version != null && version.equals(dep.getVersion());
+		}
+
+		/**
+		 * Checks if the jar contains files in a folder
+		 * 
+		 * @param dir
+		 *            The path of the folder (without a trailing
+		 *            <code>/</code>)
+		 * @return If it does
+		 * @since 1.0.0
+		 */
+		boolean contains(String dir) {
+			return dirs.contains(dir);
+		}
+
+		/**
+		 * Creates a new list of packages
+		 * 
+		 * @param version
+		 *            The version of the artifact that the jar was downloaded
+		 *            for, or <code>null</code> if it has never been
+		 *            downloaded
+		 * @param dirs
+		 *            The paths of the folders
+		 * @since 1.0.0
+		 */
+		Packages(String version, Set<String> dirs) {
+			this.version = version;
+			this.dirs = dirs;
+		}
+	}
+
+	/**
+	 * Gets the file that the index of a jar is stored in
+	 * 
+	 * @param jar
+	 *            The jar
+	 * @return The file
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static File getIndexFile(File jar) throws IOException {
+		return new File(DIR, CacheFiles.hash(jar.getAbsolutePath()).concat(".index"));
+	}
+
+	/**
+	 * Reads the stored index of a jar
+	 * 
+	 * @param jar
+	 *            The jar
+	 * @param file
+	 *            The file the index is stored in
+	 * @return The index, or <code>null</code> if there is no stored index
+	 *         that is up to date with the jar
+	 * @since 1.0.0
+	 */
+	private static Index readIndex(final File jar, File file) {
+		return CacheFiles.read(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryReader<Index>() {
+			@Override
+			public Index read(DataInputStream in) throws IOException {
+				long size = in.readLong();
+				long modified = in.readLong();
+				if (jar.length() != size || jar.lastModified() != modified) {
+					return null;
+				}
+				return new Index(size, modified, Node.read(in));
+			}
+		});
+	}
+
+	/**
+	 * Stores the index of a jar
+	 * 
+	 * @param index
+	 *            The index
+	 * @param file
+	 *            The file to store the index in
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static void writeIndex(final Index index, File file) throws IOException {
+		CacheFiles.write(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeLong(index.size);
+				out.writeLong(index.modified);
+				index.root.write(out);
+			}
+		});
+	}
+
+	/**
+	 * Indexes the entries of a jar, using the stored index if it is up to
+	 * date and storing a new one if it is not
+	 * 
+	 * @param jar
+	 *            The jar
+	 * @return The index
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the jar could not be read
+	 */
+	private static Index load(File jar) throws IOException {
+		File file = getIndexFile(jar);
+		Index index = readIndex(jar, file);
+		if (index != null) {
+			return index;
+		}
+		long size = jar.length();
+		long modified = jar.lastModified();
+		Node root = new Node();
+		JarFile jarFile = new JarFile(jar);
+		try {
+			for (Enumeration<JarEntry> entries = jarFile.entries(); entries.hasMoreElements();) {
+				root.add(entries.nextElement().getName());
+			}
+		} finally {
+			jarFile.close();
+		}
+		index = new Index(size, modified, root);
+		try {
+			writeIndex(index, file);
+		} catch (IOException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Gets the indexes of a list of jars, indexing the ones that have not
+	 * been indexed by this JVM yet in parallel
+	 * 
+	 * @param jars
+	 *            The jars
+	 * @return The indexes of the jars that could be read, keyed by jar
+	 * @since 1.0.0
+	 */
+	private static Map<File, Index> index(List<File> jars) {
+		List<FutureTask<Index>> tasks = new ArrayList<FutureTask<Index>>();
+		for (final File jar : jars) {
+			final Index cached = INDEXES.get(jar);
+			FutureTask<Index> task = new FutureTask<Index>(new Callable<Index>() {
+				@Override
+				public Index call() throws IOException {
+					if (cached != null && cached.matches(jar)) {
+						return cached;
+					}
+					Index index = load(jar);
+					INDEXES.put(jar, index);
+					return index;
+				}
+			});
+			if (cached == null || !cached.matches(jar)) {
+				DependencyResolver.getExecutor().execute(task);
+			}
+			tasks.add(task);
+		}
+		Map<File, Index> indexes = new HashMap<File, Index>();
+		for (int i = 0; i < tasks.size(); ++i) {
+			FutureTask<Index> task = tasks.get(i);
+			task.run();
+			try {
+				indexes.put(jars.get(i), task.get());
+			} catch (ExecutionException ex) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					ex.getCause().printStackTrace();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return indexes;
+	}
+
+	/**
+	 * Converts a url to the file it points to
+	 * 
+	 * @param url
+	 *            The url
+	 * @return The file, or <code>null</code> if the url does not point to a
+	 *         local file
+	 * @since 1.0.0
+	 */
+	private static File toFile(URL url) {
+		if (!url.getProtocol().equals("file")) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException ex) {
+			return null;
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the classpath root that a resource was found in
+	 * 
+	 * @param url
+	 *            The url of the resource
+	 * @param dir
+	 *            The path of the resource
+	 * @return The jar or directory, or <code>null</code> if it is not a local
+	 *         file
+	 * @since 1.0.0
+	 */
+	private static File getRoot(URL url, String dir) {
+		if (url.getProtocol().equals("jar")) {
+			String file = url.getFile();
+			int sep = file.indexOf("!/");
+			if (sep < 0) {
+				return null;
+			}
+			try {
+				return toFile(new URL(file.substring(0, sep)));
+			} catch (MalformedURLException ex) {
+				return null;
+			}
+		}
+		File file = toFile(url);
+		for (int i = dir.indexOf('/'); file != null && i >= 0; i = dir.indexOf('/', i + 1)) {
+			file = file.getParentFile();
+		}
+		return file == null ? null : file.getParentFile();
+	}
+
+	/**
+	 * Gets the chain of class loaders whose classpaths are searched by a class
+	 * loader, not including the ones of the runtime itself
+	 * 
+	 * @param cl
+	 *            The class loader
+	 * @return The class loaders, in the order they are searched
+	 * @since 1.0.0
+	 */
+	private static List<ClassLoader> getChain(ClassLoader cl) {
+		List<ClassLoader> chain = new ArrayList<ClassLoader>();
+		ClassLoader runtime = ClassLoader.getSystemClassLoader().getParent();
+		for (ClassLoader loader = cl; loader != null && loader != runtime; loader = loader.getParent()) {
+			chain.add(loader);
+		}
+		Collections.reverse(chain);
+		return chain;
+	}
+
+	/**
+	 * Gets what the roots of a chain of class loaders are found from, which
+	 * changes when a jar or directory is added to one of them
+	 * 
+	 * @param chain
+	 *            The class loaders
+	 * @return The urls of the class loaders and the system classpath
+	 * @since 1.0.0
+	 */
+	private static List<Object> getSignature(List<ClassLoader> chain) {
+		List<Object> signature = new ArrayList<Object>();
+		for (ClassLoader loader : chain) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					signature.add(url.toExternalForm());
+				}
+			} else if (loader == ClassLoader.getSystemClassLoader()) {
+				signature.add(System.getProperty("java.class.path", ""));
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * Adds roots of a classpath that exist, indexing the ones that are jars
+	 * 
+	 * @param files
+	 *            The roots to add
+	 * @param roots
+	 *            The roots that have been added, in the order they are
+	 *            searched
+	 * @param indexes
+	 *            The indexes of the roots that are jars
+	 * @since 1.0.0
+	 */
+	private static void addRoots(Set<File> files, List<File> roots, Map<File, Index> indexes) {
+		Set<File> known = new HashSet<File>(roots);
+		List<File> jars = new ArrayList<File>();
+		for (File file : files) {
+			if (!known.add(file)) {
+				continue;
+			}
+			if (file.isFile()) {
+				jars.add(file);
+				roots.add(file);
+			} else if (file.isDirectory()) {
+				roots.add(file);
+			}
+		}
+		indexes.putAll(index(jars));
+		// Jars that could not be read are left out
+		for (File jar : jars) {
+			if (!indexes.containsKey(jar)) {
+				roots.remove(jar);
+			}
+		}
+	}
+
+	/**
+	 * Finds the roots of the classpath of a chain of class loaders that they
+	 * list
+	 * 
+	 * @param chain
+	 *            The class loaders
+	 * @param signature
+	 *            The urls of the class loaders
+	 * @return The roots
+	 * @since 1.0.0
+	 */
+	private static Roots findRoots(List<ClassLoader> chain, List<Object> signature) {
+		Set<File> files = new LinkedHashSet<File>();
+		for (ClassLoader loader : chain) {
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					File file = toFile(url);
+					if (file != null) {
+						files.add(file.getAbsoluteFile());
+					}
+				}
+			} else if (loader == ClassLoader.getSystemClassLoader()) {
+				for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+					if (!path.isEmpty()) {
+						files.add(new File(path).getAbsoluteFile());
+					}
+				}
+			}
+		}
+		List<File> roots = new ArrayList<File>();
+		Map<File, Index> indexes = new HashMap<File, Index>();
+		addRoots(files, roots, indexes);
+		return new Roots(signature, roots, indexes, Collections.<String>emptySet());
+	}
+
+	/**
+	 * Adds the roots that have a folder but are not listed by a class loader,
+	 * by asking the class loader for the folder
+	 * 
+	 * @param cl
+	 *            The class loader
+	 * @param roots
+	 *            The roots that are already known
+	 * @param dir
+	 *            The folder
+	 * @return The roots including the ones that have the folder
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static Roots searchRoots(ClassLoader cl, Roots roots, String dir) throws IOException {
+		Set<File> files = new LinkedHashSet<File>();
+		for (Enumeration<URL> urls = cl.getResources(dir); urls.hasMoreElements();) {
+			File root = getRoot(urls.nextElement(), dir);
+			if (root != null) {
+				files.add(root.getAbsoluteFile());
+			}
+		}
+		List<File> list = new ArrayList<File>(roots.files);
+		Map<File, Index> indexes = new HashMap<File, Index>(roots.indexes);
+		addRoots(files, list, indexes);
+		Set<String> searched = new HashSet<String>(roots.searched);
+		searched.add(dir);
+		return new Roots(roots.signature, list, indexes, searched);
+	}
+
+	/**
+	 * Gets all of the roots of the classpath of a class loader, including the
+	 * ones of its parents, but not the ones of the runtime itself. The roots
+	 * are only found again if the urls of the class loaders have changed, and
+	 * the class loader is only asked for a folder the first time it is
+	 * listed, to find roots that the class loader does not list.
+	 * 
+	 * @param cl
+	 *            The class loader
+	 * @param dir
+	 *            A folder that is being searched for
+	 * @return The roots
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static Roots getRoots(ClassLoader cl, String dir) throws IOException {
+		List<ClassLoader> chain = getChain(cl);
+		List<Object> signature = getSignature(chain);
+		Roots roots = ROOTS.get(cl);
+		Roots found = roots;
+		if (found == null || !found.signature.equals(signature)) {
+			found = findRoots(chain, signature);
+		}
+		if (!dir.isEmpty() && !found.searched.contains(dir)) {
+			found = searchRoots(cl, found, dir);
+		}
+		if (found != roots) {
+			ROOTS.put(cl, found);
+		}
+		return found;
+	}
+
+	/**
+	 * Adds the folders under a node that contain files to a set
+	 * 
+	 * @param node
+	 *            The node of the folder
+	 * @param path
+	 *            The path of the folder
+	 * @param dirs
+	 *            The set to add the folders to
+	 * @since 1.0.0
+	 */
+	private static void addPackages(Node node, String path, Set<String> dirs) {
+		for (Map.Entry<String, Node> child : node.children.entrySet()) {
+			if (child.getValue().children == null) {
+				dirs.add(path);
+			} else {
+				addPackages(child.getValue(), path.isEmpty() ? child.getKey() : path.concat("/").concat(child.getKey()),
+						dirs);
+			}
+		}
+	}
+
+	/**
+	 * Gets the file that the packages of an artifact are stored in
+	 * 
+	 * @param dep
+	 *            The artifact
+	 * @return The file
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static File getPackagesFile(Dependency dep) throws IOException {
+		return new File(DIR, CacheFiles.hash(dep.getArtifactKey()).concat(".packages"));
+	}
+
+	/**
+	 * Records the packages of an artifact after its jar has been downloaded,
+	 * indexing the jar as well
+	 * 
+	 * @param dep
+	 *            The artifact
+	 * @param jar
+	 *            The jar that was downloaded for it
+	 * @since 1.0.0
+	 */
+	static void recordPackages(Dependency dep, File jar) {
+		Index index = index(Collections.singletonList(jar)).get(jar);
+		if (index == null || index.root.children == null || dep.getVersion() == null) {
+			return;
+		}
+		final Set<String> dirs = new LinkedHashSet<String>();
+		addPackages(index.root, "", dirs);
+		final String version = dep.getVersion();
+		PACKAGES.put(dep.getArtifactKey(), new Packages(version, dirs));
+		try {
+			CacheFiles.write(getPackagesFile(dep), PACKAGES_MAGIC, PACKAGES_FORMAT_VERSION,
+					new CacheFiles.BinaryWriter() {
+						@Override
+						public void write(DataOutputStream out) throws IOException {
+							out.writeUTF(version);
+							out.writeInt(dirs.size());
+							for (String dir : dirs) {
+								out.writeUTF(dir);
+							}
+						}
+					});
+		} catch (IOException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Gets the packages of an artifact, as they were in the jar of the
+	 * version that was downloaded last
+	 * 
+	 * @param dep
+	 *            The artifact
+	 * @return The packages, which are empty if the artifact has never been
+	 *         downloaded
+	 * @since 1.0.0
+	 */
+	static Packages getPackages(Dependency dep) {
+		Packages packages = PACKAGES.get(dep.getArtifactKey());
+		if (packages != null) {
+			return packages;
+		}
+		try {
+			packages = CacheFiles.read(getPackagesFile(dep), PACKAGES_MAGIC, PACKAGES_FORMAT_VERSION,
+					new CacheFiles.BinaryReader<Packages>() {
+						@Override
+						public Packages read(DataInputStream in) throws IOException {
+							String version = in.readUTF();
+							int count = in.readInt();
+							Set<String> dirs = new HashSet<String>();
+							for (int i = 0; i < count; ++i) {
+								dirs.add(in.readUTF());
+							}
+							return new Packages(version, dirs);
+						}
+					});
+		} catch (IOException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+		}
+		if (packages == null) {
+			packages = NO_PACKAGES;
+		}
+		Packages existing = PACKAGES.putIfAbsent(dep.getArtifactKey(), packages);
+		return existing == null ? packages : existing;
+	}
+
 	/**
 	 * Finds a list of resources that are in a specified folder in the classpath
 	 * 
@@ -32,30 +910,29 @@ public class ClassPathScanner {
 	 *             If an I/O error has occurred
 	 */
 	public static String[] listResources(String dir, ClassLoader cl) throws IOException {
-		URL dirUrl = cl.getResource(dir);
-		if (dirUrl.getProtocol().equals("jar")) {
-			List<String> resources = new ArrayList<String>();
-			String jarFile = URLDecoder.decode(dirUrl.getFile(), "UTF-8");
-			JarFile jar = new JarFile(jarFile.substring(5, jarFile.indexOf("!")));
-			Enumeration<JarEntry> entries = jar.entries();
-			while (entries.hasMoreElements()) {
-				String file = entries.nextElement().getName();
-				if (file.startsWith(dir) && file.length() > dir.length() + 5) {
-					file = file.substring(dir.length() + 1, file.length() - (file.endsWith("/") ? 1 : 0));
-					if (!file.contains("/")) {
-						resources.add(file);
-					}
+		while (dir.endsWith("/")) {
+			dir = dir.substring(0, dir.length() - 1);
+		}
+		while (dir.startsWith("/")) {
+			dir = dir.substring(1);
+		}
+		Roots roots = getRoots(cl, dir);
+		Set<String> resources = new LinkedHashSet<String>();
+		for (File root : roots.files) {
+			Index index = roots.indexes.get(root);
+			if (index != null) {
+				Node node = index.root.find(dir);
+				if (node != null && node.children != null) {
+					resources.addAll(node.children.keySet());
+				}
+			} else {
+				String[] list = new File(root, dir).list();
+				if (list != null) {
+					Collections.addAll(resources, list);
 				}
-			}
-			jar.close();
-			return resources.toArray(new String[0]);
-		} else {
-			try {
-				return new File(new URI(dirUrl.toString()).getPath()).list();
-			} catch (URISyntaxException ex) {
-				throw new IOException(ex);
 			}
 		}
+		return resources.toArray(new String[0]);
 	}
 
 	/**
@@ -0,0 +1,152 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * A snapshot of the resolved classpath for a pom, stored in the cache directory
+ * so that a warm start can inject the classpath without parsing any poms. The
+ * classpath keeps the order it was resolved in. Only classpaths whose versions
+ * are all fixed by the poms are stored, since the snapshot is not checked
+ * against the repositories again.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class ClasspathSnapshot {
+	/**
+	 * The magic number at the start of every snapshot file
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int MAGIC = 0x4d445253;
+	/**
+	 * The version of the snapshot file format
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int FORMAT_VERSION = 5;
+	/**
+	 * The file the snapshot is stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File file;
+
+	/**
+	 * Computes the key that a snapshot is stored under, which changes whenever
+	 * the pom, the requested scopes or the list of repositories changes
+	 * 
+	 * @param pom
+	 *            The contents of the pom
+	 * @param scopes
+	 *            The scopes that are being downloaded
+	 * @return The key
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	static String computeKey(byte[] pom, DependencyScope... scopes) throws IOException {
+		MessageDigest digest = CacheFiles.createDigest();
+		digest.update(pom);
+		for (DependencyScope scope : scopes) {
+			digest.update(scope.name().getBytes(CacheFiles.UTF8));
+		}
+		InputStream repos = MavenDependencies.class.getResourceAsStream("overrides.repos");
+		if (repos != null) {
+			try {
+				digest.update(CacheFiles.readFully(repos));
+			} finally {
+				repos.close();
+			}
+		}
+		return CacheFiles.toHex(digest.digest());
+	}
+
+	/**
+	 * Reads the snapshot and checks that all of the artifacts in it are still
+	 * the same files that were resolved when it was written
+	 * 
+	 * @param cache
+	 *            The local cache tiers artifacts are stored in
+	 * @return The set of dependencies in the snapshot in classpath order, or
+	 *         <code>null</code> if there is no valid snapshot
+	 * @since 1.0.0
+	 */
+	Set<Dependency> read(final LocalCache cache) {
+		return CacheFiles.read(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryReader<Set<Dependency>>() {
+			@Override
+			public Set<Dependency> read(DataInputStream in) throws IOException {
+				int count = in.readInt();
+				Set<Dependency> deps = new LinkedHashSet<Dependency>();
+				for (int i = 0; i < count; ++i) {
+					Dependency dep = Dependency.valueOf(in.readUTF(), in.readUTF(), in.readUTF(),
+							DependencyScope.values()[in.readByte()]);
+					long size = in.readLong();
+					long modified = in.readLong();
+					File jar = cache.locate(dep, "jar");
+					if (jar.length() != size || jar.lastModified() != modified) {
+						return null;
+					}
+					deps.add(dep);
+				}
+				return deps;
+			}
+		});
+	}
+
+	/**
+	 * Writes the snapshot for a resolved set of dependencies
+	 * 
+	 * @param deps
+	 *            The dependencies that were resolved, in classpath order
+	 * @param cache
+	 *            The local cache tiers artifacts are stored in
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	void write(Set<Dependency> deps, final LocalCache cache) throws IOException {
+		final Set<Dependency> jars = new LinkedHashSet<Dependency>();
+		for (Dependency dep : deps) {
+			if (cache.locate(dep, "jar").exists()) {
+				jars.add(dep);
+			}
+		}
+		CacheFiles.write(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(jars.size());
+				for (Dependency dep : jars) {
+					File jar = cache.locate(dep, "jar");
+					out.writeUTF(dep.getGroupId());
+					out.writeUTF(dep.getArtifactId());
+					out.writeUTF(dep.getVersion());
+					out.writeByte(dep.getScope().ordinal());
+					out.writeLong(jar.length());
+					out.writeLong(jar.lastModified());
+				}
+			}
+		});
+	}
+
+	/**
+	 * Creates a new snapshot
+	 * 
+	 * @param dir
+	 *            The directory that snapshots are stored in
+	 * @param key
+	 *            The key of the snapshot
+	 * @see ClasspathSnapshot#computeKey(byte[], DependencyScope...)
+	 * @since 1.0.0
+	 */
+	ClasspathSnapshot(File dir, String key) {
+		file = new File(dir, key.concat(".classpath"));
+	}
+}
@@ -1,10 +1,8 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -60,14 +58,16 @@ final class CommonOverrides extends Repository {
 	}
 
 	/**
-	 * Loads the arrays from the files in the classpath
+	 * Loads the arrays from the files in the classpath. This is synchronized
+	 * because the resolver threads can all reach this at the same time, and
+	 * every reader calls this before it reads the arrays.
 	 * 
 	 * @see CommonOverrides#DEPENDENCY_OVERRIDES
 	 * @see CommonOverrides#OVERRIDDEN_URLS
 	 * @since 1.0.0
 	 * @throws IOException
 	 */
-	private static void init() throws IOException {
+	private static synchronized void init() throws IOException {
 		if (DEPENDENCY_OVERRIDES == null) {
 			DEPENDENCY_OVERRIDES = load("overrides.deps");
 		}
@@ -92,27 +92,26 @@ final class CommonOverrides extends Repository {
 				String override = OVERRIDDEN_URLS[index];
 				if (!override.isEmpty()) {
 					URL url = new URL(override);
-					InputStream ins = url.openStream();
-					OutputStream outs = new FileOutputStream(out);
-					byte[] buffer = new byte[4096];
-					for (int len; (len = ins.read(buffer)) > 0; outs.write(buffer, 0, len))
-						;
-					outs.close();
-					ins.close();
+					InputStream ins = getTransport().openStream(url);
+					try {
+						CacheFiles.save(ins, out);
+					} finally {
+						ins.close();
+					}
 				}
 			}
 		}
 	}
 
 	@Override
-	public void setVersion(Dependency dep) throws IOException {
+	public Dependency resolveVersion(Dependency dep) throws IOException {
 		init();
 		int index = Arrays.binarySearch(DEPENDENCY_OVERRIDES,
-				String.format("%s:%s", dep.getGroupId(), dep.getArtifactId()));
+				dep.getArtifactKey());
 		if (index < 0) {
 			throw new IOException("Not supported by this repository");
 		} else {
-			dep.setVersion(OVERRIDDEN_URLS[index]);
+			return dep.withVersion(OVERRIDDEN_URLS[index]);
 		}
 	}
 }
@@ -2,12 +2,21 @@ package com.github.zachdeibert.mavendependencyruntime;
 
 import java.io.File;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
 
 /**
  * Represents a dependency that needs to be downloaded and injected into the
- * classpath
+ * classpath. Dependencies are immutable; resolving the version of a dependency
+ * creates a new one.
  * 
  * @author Zach Deibert
  * @since 1.0.0
@@ -18,7 +27,15 @@ public class Dependency extends AbstractXmlParser {
 	 * 
 	 * @since 1.0.0
 	 */
-	private static final String LATEST_VERSION = "latest";
+	static final String LATEST_VERSION = "latest";
+	/**
+	 * The dependencies that have been created through
+	 * {@link Dependency#valueOf(String, String, String, DependencyScope)}, so
+	 * that repeated coordinates share one instance
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ConcurrentMap<String, Dependency> INTERNED = new ConcurrentHashMap<String, Dependency>();
 	/**
 	 * The ID of the group for this dependency
 	 * 
@@ -37,13 +54,62 @@ public class Dependency extends AbstractXmlParser {
 	 * 
 	 * @since 1.0.0
 	 */
-	private String version;
+	private final String version;
+	/**
+	 * The range of versions that are allowed, or <code>null</code> if the
+	 * version was not specified as a range
+	 * 
+	 * @since 1.0.0
+	 */
+	private final VersionRange range;
 	/**
 	 * The scope of the dependency
 	 * 
 	 * @since 1.0.0
 	 */
 	private final DependencyScope scope;
+	/**
+	 * If the dependency is optional, so it is not included when it is a
+	 * dependency of another dependency
+	 * 
+	 * @since 1.0.0
+	 */
+	private final boolean optional;
+	/**
+	 * The artifacts that are excluded from the dependencies of this dependency,
+	 * as <code>groupId:artifactId</code> where either part can be
+	 * <code>*</code> to match anything
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<String> exclusions;
+	/**
+	 * The coordinates of this dependency as <code>groupId:artifactId</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String artifactKey;
+	/**
+	 * The path of the directory that holds all of the versions of this
+	 * artifact, relative to the root of a repository
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String artifactPath;
+	/**
+	 * The path of the files of this version of the artifact relative to the
+	 * root of a repository, without the extension, or <code>null</code> if the
+	 * version has not been resolved
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String basePath;
+	/**
+	 * The hash code of this dependency
+	 * 
+	 * @since 1.0.0
+	 */
+	private final int hash;
 
 	/**
 	 * Gets the ID of the group for this dependency
@@ -65,6 +131,28 @@ public class Dependency extends AbstractXmlParser {
 		return artifactId;
 	}
 
+	/**
+	 * Gets the path of the directory that holds all of the versions of this
+	 * artifact relative to the root of a repository
+	 * 
+	 * @return The relative path, using <code>/</code> as the separator
+	 * @since 1.0.0
+	 */
+	String getArtifactPath() {
+		return artifactPath;
+	}
+
+	/**
+	 * Gets the coordinates of the artifact of this dependency, ignoring the
+	 * version
+	 * 
+	 * @return The coordinates as <code>groupId:artifactId</code>
+	 * @since 1.0.0
+	 */
+	String getArtifactKey() {
+		return artifactKey;
+	}
+
 	/**
 	 * Gets the version of the artifact to download
 	 * 
@@ -77,21 +165,76 @@ public class Dependency extends AbstractXmlParser {
 	}
 
 	/**
-	 * Sets the latest version of this dependency
+	 * Checks if the version of this dependency is a snapshot, whose contents
+	 * can change without the version changing
+	 * 
+	 * @return If it is a snapshot version
+	 * @since 1.0.0
+	 */
+	boolean isSnapshot() {
+		return version.endsWith("-SNAPSHOT");
+	}
+
+	/**
+	 * Gets the range of versions that are allowed for this dependency
+	 * 
+	 * @return The range, or <code>null</code> if the version was not
+	 *         specified as a range
+	 * @since 1.0.0
+	 */
+	VersionRange getVersionRange() {
+		return range;
+	}
+
+	/**
+	 * Checks if a version of the same artifact satisfies the range of versions
+	 * that this dependency requires
+	 * 
+	 * @param other
+	 *            The other version of the artifact
+	 * @return If the other version is in the range, or if this dependency was
+	 *         not specified as a range
+	 * @since 1.0.0
+	 */
+	boolean allows(Dependency other) {
+		if (range == null) {
+			return true;
+		}
+		String ver = other.getVersion();
+		return ver != null && range.contains(Version.valueOf(ver));
+	}
+
+	/**
+	 * Gets the version of this dependency as it should be written back out,
+	 * which is the range if the version has not been resolved yet
+	 * 
+	 * @return The version, the range, or {@link Dependency#LATEST_VERSION}
+	 * @since 1.0.0
+	 */
+	String getVersionSpec() {
+		if (version == LATEST_VERSION && range != null) {
+			return range.toString();
+		}
+		return version;
+	}
+
+	/**
+	 * Creates a copy of this dependency with its version resolved
 	 * 
 	 * @param version
-	 *            The latest version
+	 *            The version
+	 * @return The dependency with the version
 	 * @since 1.0.0
 	 * @throws IllegalStateException
 	 *             If this dependency has a specific version already
 	 */
-	public void setVersion(String version) {
+	public Dependency withVersion(String version) {
 		if (this.version != LATEST_VERSION) {
 			throw new IllegalStateException("Version is already resolved");
 		} else if (version == LATEST_VERSION) {
 			throw new IllegalArgumentException("Cannot set version to the latest");
 		} else {
-			this.version = version;
+			return valueOf(groupId, artifactId, version, scope, optional, exclusions);
 		}
 	}
 
@@ -105,17 +248,13 @@ public class Dependency extends AbstractXmlParser {
 	 * @since 1.0.0
 	 */
 	public Version[] getInstalledVersions(File dir) {
-		for (String part : getGroupId().split("\\.")) {
-			dir = new File(dir, part);
-		}
-		dir = new File(dir, getArtifactId());
-		String[] strs = dir.list();
+		String[] strs = new File(dir, artifactPath).list();
 		if (strs == null) {
 			return new Version[0];
 		}
 		Version[] vers = new Version[strs.length];
 		for (int i = 0; i < strs.length; ++i) {
-			vers[i] = new Version(strs[i]);
+			vers[i] = Version.valueOf(strs[i]);
 		}
 		return vers;
 	}
@@ -130,6 +269,71 @@ public class Dependency extends AbstractXmlParser {
 		return scope;
 	}
 
+	/**
+	 * Checks if the dependency is optional, so it is not included when it is a
+	 * dependency of another dependency
+	 * 
+	 * @return If the dependency is optional
+	 * @since 1.0.0
+	 */
+	public boolean isOptional() {
+		return optional;
+	}
+
+	/**
+	 * Gets the artifacts that are excluded from the dependencies of this
+	 * dependency
+	 * 
+	 * @return The list of exclusions, as <code>groupId:artifactId</code> where
+	 *         either part can be <code>*</code> to match anything
+	 * @since 1.0.0
+	 */
+	public List<String> getExclusions() {
+		return exclusions;
+	}
+
+	/**
+	 * Checks if another dependency is excluded from the dependencies of this
+	 * dependency
+	 * 
+	 * @param dep
+	 *            The other dependency
+	 * @return If it is excluded
+	 * @since 1.0.0
+	 */
+	boolean excludes(Dependency dep) {
+		for (String exclusion : exclusions) {
+			int colon = exclusion.indexOf(':');
+			int artifactLength = exclusion.length() - colon - 1;
+			if (((colon == 1 && exclusion.charAt(0) == '*')
+					|| (colon == dep.groupId.length() && exclusion.startsWith(dep.groupId)))
+					&& ((artifactLength == 1 && exclusion.charAt(colon + 1) == '*')
+							|| (artifactLength == dep.artifactId.length() && exclusion.endsWith(dep.artifactId)))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the path of a file of this dependency relative to the root of a
+	 * repository
+	 * 
+	 * @param ext
+	 *            The file extension (should be either <code>"jar"</code> or
+	 *            <code>"pom"</code>
+	 * @return The relative path, using <code>/</code> as the separator
+	 * @since 1.0.0
+	 * @throws IllegalStateException
+	 *             If the version has not been resolved
+	 */
+	String getPath(String ext) {
+		if (basePath == null) {
+			throw new IllegalStateException("Version is not resolved");
+		}
+		return basePath.concat(ext);
+	}
+
 	/**
 	 * Gets the file that the downloaded artifact should be stored in
 	 * 
@@ -142,27 +346,17 @@ public class Dependency extends AbstractXmlParser {
 	 * @since 1.0.0
 	 */
 	public File getFile(File dir, String ext) {
-		for (String part : getGroupId().split("\\.")) {
-			dir = new File(dir, part);
-		}
-		dir = new File(dir, getArtifactId());
-		dir = new File(dir, getVersion());
-		dir = new File(dir, String.format("%s-%s.%s", getArtifactId(), getVersion(), ext));
-		return dir;
+		return new File(dir, getPath(ext));
 	}
 
 	@Override
 	public String toString() {
-		return String.format("%s:%s:%s", groupId, artifactId, version);
+		return artifactKey.concat(":").concat(version);
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
-		result = prime * result + ((artifactId == null) ? 0 : artifactId.hashCode());
-		return result;
+		return hash;
 	}
 
 	@Override
@@ -170,40 +364,112 @@ public class Dependency extends AbstractXmlParser {
 		if (this == obj) {
 			return true;
 		}
-		if (obj == null) {
-			return false;
-		}
 		if (!(obj instanceof Dependency)) {
 			return false;
 		}
 		Dependency other = (Dependency) obj;
-		if (groupId == null) {
-			if (other.groupId != null) {
-				return false;
-			}
-		} else if (!groupId.equals(other.groupId)) {
-			return false;
+		return hash == other.hash && groupId.equals(other.groupId) && artifactId.equals(other.artifactId)
+				&& getVersionSpec().equals(other.getVersionSpec());
+	}
+
+	/**
+	 * Gets the dependency for a set of coordinates, reusing the instance from
+	 * an earlier call if the same coordinates have been used before
+	 * 
+	 * @param groupId
+	 *            The group ID
+	 * @param artifactId
+	 *            The artifact ID
+	 * @param version
+	 *            The version to download
+	 * @param scope
+	 *            The scope
+	 * @param optional
+	 *            If the dependency is optional
+	 * @param exclusions
+	 *            The artifacts that are excluded from the dependencies of the
+	 *            dependency, as <code>groupId:artifactId</code> where either
+	 *            part can be <code>*</code> to match anything
+	 * @return The dependency
+	 * @since 1.0.0
+	 */
+	public static Dependency valueOf(String groupId, String artifactId, String version, DependencyScope scope,
+			boolean optional, Collection<String> exclusions) {
+		StringBuilder key = new StringBuilder(groupId.length() + artifactId.length() + version.length() + 16)
+				.append(groupId).append(':').append(artifactId).append(':').append(version).append(':')
+				.append(scope.ordinal());
+		if (optional) {
+			key.append('?');
+		}
+		for (String exclusion : exclusions) {
+			key.append('!').append(exclusion);
 		}
-		if (artifactId == null) {
-			if (other.artifactId != null) {
-				return false;
+		String str = key.toString();
+		Dependency dep = INTERNED.get(str);
+		if (dep == null) {
+			dep = new Dependency(groupId, artifactId, version, scope, optional, exclusions);
+			Dependency existing = INTERNED.putIfAbsent(str, dep);
+			if (existing != null) {
+				dep = existing;
 			}
-		} else if (!artifactId.equals(other.artifactId)) {
-			return false;
 		}
-		if (version == LATEST_VERSION || other.version == LATEST_VERSION) {
-		} else if (version == null) {
-			if (other.version != null) {
-				return false;
+		return dep;
+	}
+
+	/**
+	 * Gets the dependency for a set of coordinates, reusing the instance from
+	 * an earlier call if the same coordinates have been used before
+	 * 
+	 * @param groupId
+	 *            The group ID
+	 * @param artifactId
+	 *            The artifact ID
+	 * @param version
+	 *            The version to download
+	 * @param scope
+	 *            The scope
+	 * @return The dependency
+	 * @since 1.0.0
+	 */
+	public static Dependency valueOf(String groupId, String artifactId, String version, DependencyScope scope) {
+		return valueOf(groupId, artifactId, version, scope, false, Collections.<String>emptyList());
+	}
+
+	/**
+	 * Reads the exclusions of a dependency element in the pom
+	 * 
+	 * @param node
+	 *            The dependency element
+	 * @return The list of exclusions, as <code>groupId:artifactId</code>
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If the xml could not be parsed
+	 */
+	private static List<String> findExclusions(Element node) throws ParseException {
+		List<String> exclusions = new ArrayList<String>();
+		NodeList list = node.getElementsByTagName("exclusion");
+		for (int i = 0; i < list.getLength(); ++i) {
+			Node exclusion = list.item(i);
+			if (exclusion instanceof Element) {
+				String groupId = find("groupId", (Element) exclusion, "").trim();
+				String artifactId = find("artifactId", (Element) exclusion, "").trim();
+				// a missing field is malformed, not a wildcard
+				if (groupId.isEmpty() || artifactId.isEmpty()) {
+					if (MavenDependencies.ENABLE_LOGGING) {
+						System.out.printf("Ignoring malformed exclusion %s:%s\n", groupId, artifactId);
+					}
+				} else {
+					exclusions.add(groupId.concat(":").concat(artifactId));
+				}
 			}
-		} else if (!version.equals(other.version)) {
-			return false;
 		}
-		return true;
+		return exclusions;
 	}
 
 	/**
-	 * Creates a new dependency
+	 * Creates a new dependency. Prefer
+	 * {@link Dependency#valueOf(String, String, String, DependencyScope, boolean, Collection)},
+	 * which reuses instances for repeated coordinates.
 	 * 
 	 * @param groupId
 	 *            The group ID
@@ -213,14 +479,73 @@ public class Dependency extends AbstractXmlParser {
 	 *            The version to download
 	 * @param scope
 	 *            The scope
+	 * @param optional
+	 *            If the dependency is optional
+	 * @param exclusions
+	 *            The artifacts that are excluded from the dependencies of the
+	 *            dependency, as <code>groupId:artifactId</code> where either
+	 *            part can be <code>*</code> to match anything
 	 * @since 1.0.0
 	 */
-	public Dependency(String groupId, String artifactId, String version, DependencyScope scope) {
+	public Dependency(String groupId, String artifactId, String version, DependencyScope scope, boolean optional,
+			Collection<String> exclusions) {
+		if (groupId == null || artifactId == null || version == null || scope == null) {
+			throw new NullPointerException("Dependency coordinates must not be null");
+		}
 		this.groupId = groupId;
 		this.artifactId = artifactId;
-		this.version = version.contains("$") || version.contains("[") || version.contains("(") ? LATEST_VERSION
-				: version; // TODO Make if support variables and ranges
+		VersionRange range = null;
+		if (VersionRange.isRange(version)) {
+			try {
+				range = VersionRange.parse(version);
+			} catch (IllegalArgumentException ex) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					System.out.printf("Ignoring malformed version range %s of %s:%s, using the latest version\n",
+							version, groupId, artifactId);
+				}
+			}
+		}
+		Version exact = range == null ? null : range.getExactVersion();
+		if (exact != null) {
+			this.version = exact.toString();
+		} else if (version.equals(LATEST_VERSION) || version.contains("$") || VersionRange.isRange(version)) {
+			this.version = LATEST_VERSION;
+		} else {
+			this.version = version;
+		}
+		this.range = range;
 		this.scope = scope;
+		this.optional = optional;
+		this.exclusions = exclusions.isEmpty() ? Collections.<String>emptyList()
+				: Collections.unmodifiableList(new ArrayList<String>(exclusions));
+		artifactKey = groupId.concat(":").concat(artifactId);
+		artifactPath = groupId.replace('.', '/').concat("/").concat(artifactId);
+		if (this.version == LATEST_VERSION) {
+			basePath = null;
+		} else {
+			basePath = new StringBuilder(artifactPath).append('/').append(this.version).append('/').append(artifactId)
+					.append('-').append(this.version).append('.').toString();
+		}
+		hash = (31 * (31 * groupId.hashCode() + artifactId.hashCode())) + getVersionSpec().hashCode();
+	}
+
+	/**
+	 * Creates a new dependency. Prefer
+	 * {@link Dependency#valueOf(String, String, String, DependencyScope)},
+	 * which reuses instances for repeated coordinates.
+	 * 
+	 * @param groupId
+	 *            The group ID
+	 * @param artifactId
+	 *            The artifact ID
+	 * @param version
+	 *            The version to download
+	 * @param scope
+	 *            The scope
+	 * @since 1.0.0
+	 */
+	public Dependency(String groupId, String artifactId, String version, DependencyScope scope) {
+		this(groupId, artifactId, version, scope, false, Collections.<String>emptyList());
 	}
 
 	/**
@@ -234,6 +559,7 @@ public class Dependency extends AbstractXmlParser {
 	 */
 	public Dependency(Element node) throws ParseException {
 		this(find("groupId", node, null), find("artifactId", node, null), find("version", node, LATEST_VERSION),
-				DependencyScope.valueOf(find("scope", node, "compile").toUpperCase()));
+				DependencyScope.valueOf(find("scope", node, "compile").toUpperCase()),
+				Boolean.parseBoolean(find("optional", node, "false")), findExclusions(node));
 	}
 }
@@ -0,0 +1,813 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * The class loader that the application and its dependencies are loaded with.
+ * Every jar that is added to it is indexed by the directories (packages) that
+ * it contains, so finding a class or resource only has to look in the jars
+ * that have its package instead of searching through every jar on the
+ * classpath. Classes from this library are always loaded from the class
+ * loader that loaded the library, so that there is only one copy of its state.
+ * In lazy mode, the jars of some dependencies are not downloaded until a class
+ * or resource that could be in them is first needed, which is decided by the
+ * packages that were recorded when their jars were downloaded before.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class DependencyClassLoader extends URLClassLoader {
+	/**
+	 * The prefix of the names of the classes in this library
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String LIBRARY_PACKAGE = "com.github.zachdeibert.mavendependencyruntime.";
+	/**
+	 * The number of leading segments of a package that have to match an
+	 * artifact for the artifact to be considered to contain it
+	 * 
+	 * @see DependencyClassLoader#getPackageMatch(Dependency, String)
+	 * @since 1.0.0
+	 */
+	private static final int MIN_PACKAGE_MATCH = 2;
+	/**
+	 * The directory that multi-release jars keep the classes for newer
+	 * runtimes in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String VERSIONS_DIR = "META-INF/versions/";
+	/**
+	 * The version of the runtime, or <code>null</code> if the runtime does not
+	 * support multi-release jars
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Object RUNTIME_VERSION;
+	/**
+	 * The constructor that opens a jar as a multi-release jar for a version
+	 * of the runtime, or <code>null</code> if the runtime does not support
+	 * multi-release jars
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Constructor<JarFile> OPEN_VERSIONED;
+	/**
+	 * The method that gets the name that a versioned jar entry is stored
+	 * under, or <code>null</code> if the runtime does not have it
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Method GET_REAL_NAME;
+	/**
+	 * The method that gets a package that was defined by a class loader
+	 * without looking at its parents, or <code>null</code> if the runtime does
+	 * not have it
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Method GET_DEFINED_PACKAGE;
+	/**
+	 * The class loader that loaded this library
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ClassLoader library;
+	/**
+	 * The jars that contain each directory, keyed by the path of the directory
+	 * (without a trailing <code>/</code>), in the order they were added
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ConcurrentMap<String, List<Archive>> index;
+	/**
+	 * The directories that have been added, which are not indexed
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<File> directories;
+	/**
+	 * The files that have already been added
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<File> added;
+	/**
+	 * The downloads of the dependencies whose jars have not been added yet
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ConcurrentMap<Dependency, FutureTask<?>> pending;
+	/**
+	 * The dependencies that a lookup had to wait for because their jars were
+	 * still being downloaded, and that were picked by the package of the class
+	 * or resource being looked up
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<Dependency> blocked;
+
+	static {
+		registerAsParallelCapable();
+		Object version = null;
+		Constructor<JarFile> open = null;
+		try {
+			Class<?> versionCls = Class.forName("java.lang.Runtime$Version");
+			open = JarFile.class.getConstructor(File.class, boolean.class, int.class, versionCls);
+			version = Runtime.class.getMethod("version").invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			open = null;
+		} catch (RuntimeException ex) {
+			open = null;
+		}
+		RUNTIME_VERSION = version;
+		OPEN_VERSIONED = open;
+		GET_REAL_NAME = getMethod(JarEntry.class, "getRealName");
+		GET_DEFINED_PACKAGE = getMethod(ClassLoader.class, "getDefinedPackage", String.class);
+	}
+
+	/**
+	 * A jar that has been added to the class loader
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Archive {
+		/**
+		 * The open jar file
+		 * 
+		 * @since 1.0.0
+		 */
+		private final JarFile jar;
+		/**
+		 * The url of the jar file
+		 * 
+		 * @since 1.0.0
+		 */
+		private final URL url;
+		/**
+		 * The manifest of the jar, or <code>null</code> if it does not have
+		 * one
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Manifest manifest;
+
+		/**
+		 * Creates a new archive
+		 * 
+		 * @param jar
+		 *            The open jar file
+		 * @param url
+		 *            The url of the jar file
+		 * @param manifest
+		 *            The manifest of the jar, or <code>null</code> if it does
+		 *            not have one
+		 * @since 1.0.0
+		 */
+		Archive(JarFile jar, URL url, Manifest manifest) {
+			this.jar = jar;
+			this.url = url;
+			this.manifest = manifest;
+		}
+	}
+
+	/**
+	 * Looks up a method that only newer runtimes have
+	 * 
+	 * @param cls
+	 *            The class that declares the method
+	 * @param name
+	 *            The name of the method
+	 * @param params
+	 *            The parameter types of the method
+	 * @return The method, or <code>null</code> if the runtime does not have it
+	 * @since 1.0.0
+	 */
+	private static Method getMethod(Class<?> cls, String name, Class<?>... params) {
+		try {
+			return cls.getMethod(name, params);
+		} catch (ReflectiveOperationException ex) {
+		} catch (RuntimeException ex) {
+		}
+		return null;
+	}
+
+	/**
+	 * Opens a jar. On runtimes that support multi-release jars, the jar is
+	 * opened for the version of the runtime, so that the same classes are
+	 * found as with a {@link URLClassLoader}.
+	 * 
+	 * @param file
+	 *            The jar
+	 * @return The open jar
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the jar could not be opened
+	 */
+	private static JarFile openJar(File file) throws IOException {
+		if (OPEN_VERSIONED != null) {
+			try {
+				return OPEN_VERSIONED.newInstance(file, true, ZipFile.OPEN_READ, RUNTIME_VERSION);
+			} catch (InvocationTargetException ex) {
+				if (ex.getCause() instanceof IOException) {
+					throw (IOException) ex.getCause();
+				}
+			} catch (ReflectiveOperationException ex) {
+			} catch (RuntimeException ex) {
+			}
+		}
+		return new JarFile(file);
+	}
+
+	/**
+	 * Gets the name that a jar entry is stored under, which is different from
+	 * its name for classes that come from the versioned part of a
+	 * multi-release jar
+	 * 
+	 * @param entry
+	 *            The entry
+	 * @return The name of the entry in the jar
+	 * @since 1.0.0
+	 */
+	private static String getRealName(JarEntry entry) {
+		if (GET_REAL_NAME != null) {
+			try {
+				return (String) GET_REAL_NAME.invoke(entry);
+			} catch (ReflectiveOperationException ex) {
+			} catch (RuntimeException ex) {
+			}
+		}
+		return entry.getName();
+	}
+
+	/**
+	 * Gets the directory that a resource is in
+	 * 
+	 * @param path
+	 *            The path of the resource
+	 * @return The path of the directory, or <code>""</code> if it is in the
+	 *         root
+	 * @since 1.0.0
+	 */
+	private static String getDirectory(String path) {
+		int end = path.endsWith("/") ? path.length() - 1 : path.length();
+		int slash = path.lastIndexOf('/', end - 1);
+		return slash < 0 ? "" : path.substring(0, slash);
+	}
+
+	/**
+	 * Guesses how well a package matches the packages in an artifact. Maven
+	 * does not list the packages that are in a jar, so this is based on the
+	 * number of leading segments of the package that are the same as the
+	 * group ID of the artifact, plus one if the next segment is part of the
+	 * artifact ID.
+	 * 
+	 * @param dep
+	 *            The artifact
+	 * @param pkg
+	 *            The name of the package
+	 * @return The number of segments that match
+	 * @since 1.0.0
+	 */
+	static int getPackageMatch(Dependency dep, String pkg) {
+		String[] group = dep.getGroupId().split("\\.");
+		String[] segments = pkg.split("\\.");
+		int match = 0;
+		while (match < group.length && match < segments.length && group[match].equals(segments[match])) {
+			++match;
+		}
+		if (match < segments.length) {
+			for (String token : dep.getArtifactId().split("[-.]")) {
+				if (token.equals(segments[match])) {
+					return match + 1;
+				}
+			}
+		}
+		return match;
+	}
+
+	/**
+	 * Finds the artifacts that most likely contain a package
+	 * 
+	 * @param deps
+	 *            The artifacts to search
+	 * @param pkg
+	 *            The name of the package
+	 * @return The artifacts that match the package best, or an empty list if
+	 *         none of them match it well enough
+	 * @see DependencyClassLoader#getPackageMatch(Dependency, String)
+	 * @since 1.0.0
+	 */
+	static List<Dependency> findPackage(Collection<Dependency> deps, String pkg) {
+		List<Dependency> best = new ArrayList<Dependency>();
+		int bestMatch = MIN_PACKAGE_MATCH;
+		for (Dependency dep : deps) {
+			int match = getPackageMatch(dep, pkg);
+			if (match > bestMatch) {
+				best.clear();
+				bestMatch = match;
+			}
+			if (match == bestMatch) {
+				best.add(dep);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Records that a jar contains a directory
+	 * 
+	 * @param dir
+	 *            The path of the directory
+	 * @param archive
+	 *            The jar
+	 * @since 1.0.0
+	 */
+	private void index(String dir, Archive archive) {
+		List<Archive> list = index.get(dir);
+		if (list == null) {
+			list = new CopyOnWriteArrayList<Archive>();
+			List<Archive> existing = index.putIfAbsent(dir, list);
+			if (existing != null) {
+				list = existing;
+			}
+		}
+		if (!list.contains(archive)) {
+			list.add(archive);
+		}
+	}
+
+	/**
+	 * Adds a jar or directory to the classpath of this class loader. Files
+	 * that have already been added are ignored.
+	 * 
+	 * @param file
+	 *            The jar or directory
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the jar could not be read
+	 */
+	void addFile(File file) throws IOException {
+		file = file.getAbsoluteFile();
+		if (!added.add(file)) {
+			return;
+		}
+		URL url = file.toURI().toURL();
+		if (file.isDirectory()) {
+			directories.add(file);
+		} else {
+			JarFile jar = openJar(file);
+			Archive archive = new Archive(jar, url, jar.getManifest());
+			String last = null;
+			for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+				String name = entries.nextElement().getName();
+				if (OPEN_VERSIONED != null && name.startsWith(VERSIONS_DIR)) {
+					// Classes that only exist for newer runtimes are looked up
+					// by their name without the version directory
+					int slash = name.indexOf('/', VERSIONS_DIR.length());
+					if (slash > 0) {
+						index(getDirectory(name.substring(slash + 1)), archive);
+					}
+				}
+				String dir = getDirectory(name);
+				if (!dir.equals(last)) {
+					index(dir, archive);
+					last = dir;
+				}
+			}
+		}
+		addURL(url);
+	}
+
+	/**
+	 * Adds a dependency whose jar is downloaded the first time that a class or
+	 * resource that could be in it is needed. The download is expected to add
+	 * the jar to this class loader.
+	 * 
+	 * @param dep
+	 *            The dependency
+	 * @param download
+	 *            The task that downloads the jar
+	 * @since 1.0.0
+	 */
+	void addLazy(Dependency dep, FutureTask<?> download) {
+		pending.putIfAbsent(dep, download);
+	}
+
+	/**
+	 * Gets the dependencies that a lookup had to wait for because their jars
+	 * were still being downloaded. Downloads that were not picked by the
+	 * package of a lookup (such as when every pending dependency has to be
+	 * downloaded to list all copies of a resource) are not included, since
+	 * they do not say which jars the lookup actually needed.
+	 * 
+	 * @return The set of dependencies
+	 * @since 1.0.0
+	 */
+	Set<Dependency> getBlocked() {
+		return Collections.unmodifiableSet(blocked);
+	}
+
+	/**
+	 * Runs the downloads of some of the pending dependencies and waits for
+	 * them to finish. The downloads are started on the shared executor, and
+	 * any that have not started yet by the time they are waited for are run on
+	 * this thread instead.
+	 * 
+	 * @param deps
+	 *            The dependencies to download
+	 * @param record
+	 *            If the dependencies that have not finished downloading should
+	 *            be added to the {@link DependencyClassLoader#blocked} ones
+	 * @since 1.0.0
+	 */
+	private void download(Collection<Dependency> deps, boolean record) {
+		List<FutureTask<?>> tasks = new ArrayList<FutureTask<?>>();
+		for (Dependency dep : deps) {
+			FutureTask<?> task = pending.get(dep);
+			if (task != null) {
+				tasks.add(task);
+				if (record && !task.isDone()) {
+					blocked.add(dep);
+				}
+			}
+		}
+		if (tasks.size() > 1) {
+			for (FutureTask<?> task : tasks) {
+				DependencyResolver.getExecutor().execute(task);
+			}
+		}
+		for (FutureTask<?> task : tasks) {
+			task.run();
+			try {
+				task.get();
+			} catch (ExecutionException ex) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					ex.getCause().printStackTrace();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		pending.values().removeAll(tasks);
+	}
+
+	/**
+	 * Downloads the pending dependencies that contain a resource according to
+	 * the packages that were recorded for them. If none of them do, the ones
+	 * that most likely contain it by their names are downloaded instead, and
+	 * if there are none of those either, all of the ones whose packages are
+	 * not known for their version are downloaded, since any of them could
+	 * contain it.
+	 * 
+	 * @param path
+	 *            The path of the resource
+	 * @return If any dependencies were downloaded, so looking for the resource
+	 *         again could find it
+	 * @since 1.0.0
+	 */
+	private boolean downloadFor(String path) {
+		if (pending.isEmpty() || Thread.currentThread().isInterrupted()) {
+			return false;
+		}
+		String dir = getDirectory(path);
+		List<Dependency> deps = new ArrayList<Dependency>();
+		List<Dependency> unknown = new ArrayList<Dependency>();
+		for (Dependency dep : pending.keySet()) {
+			ClassPathScanner.Packages packages = ClassPathScanner.getPackages(dep);
+			if (packages.contains(dir)) {
+				deps.add(dep);
+			} else if (!packages.isOf(dep)) {
+				unknown.add(dep);
+			}
+		}
+		if (deps.isEmpty()) {
+			deps = findPackage(unknown, dir.replace('/', '.'));
+		}
+		if (!deps.isEmpty()) {
+			download(deps, true);
+			return true;
+		}
+		download(unknown, false);
+		return !unknown.isEmpty();
+	}
+
+	/**
+	 * Downloads all of the pending dependencies and adds them to this class
+	 * loader
+	 * 
+	 * @since 1.0.0
+	 */
+	void downloadAll() {
+		while (!pending.isEmpty() && !Thread.currentThread().isInterrupted()) {
+			download(new ArrayList<Dependency>(pending.keySet()), false);
+		}
+	}
+
+	/**
+	 * Defines the package of a class if it has not been defined yet
+	 * 
+	 * @param name
+	 *            The name of the class
+	 * @param manifest
+	 *            The manifest of the jar the class is in, or
+	 *            <code>null</code> if there is no manifest
+	 * @param url
+	 *            The url of the jar or directory the class is in
+	 * @since 1.0.0
+	 */
+	private void definePackageFor(String name, Manifest manifest, URL url) {
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			String pkg = name.substring(0, dot);
+			if (findDefinedPackage(pkg) == null) {
+				try {
+					if (manifest == null) {
+						definePackage(pkg, null, null, null, null, null, null, null);
+					} else {
+						definePackage(pkg, manifest, url);
+					}
+				} catch (IllegalArgumentException ex) {
+					// Another thread defined it first
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets a package that this class loader has defined
+	 * 
+	 * @param pkg
+	 *            The name of the package
+	 * @return The package, or <code>null</code> if it has not been defined
+	 * @since 1.0.0
+	 */
+	@SuppressWarnings("deprecation")
+	private Package findDefinedPackage(String pkg) {
+		if (GET_DEFINED_PACKAGE != null) {
+			try {
+				return (Package) GET_DEFINED_PACKAGE.invoke(this, pkg);
+			} catch (ReflectiveOperationException ex) {
+			} catch (RuntimeException ex) {
+			}
+		}
+		// getPackage() is only deprecated on the runtimes that have
+		// getDefinedPackage(), so this is only reached on older ones
+		return getPackage(pkg);
+	}
+
+	/**
+	 * Reads and defines a class
+	 * 
+	 * @param name
+	 *            The name of the class
+	 * @param stream
+	 *            The stream containing the class file
+	 * @param manifest
+	 *            The manifest of the jar the class is in, or
+	 *            <code>null</code> if there is no manifest
+	 * @param url
+	 *            The url of the jar or directory the class is in
+	 * @param entry
+	 *            The entry of the class in the jar, or <code>null</code> if
+	 *            it is in a directory
+	 * @return The class
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the class could not be read
+	 */
+	private Class<?> define(String name, InputStream stream, Manifest manifest, URL url, JarEntry entry)
+			throws IOException {
+		byte[] bytes;
+		try {
+			bytes = CacheFiles.readFully(stream);
+		} finally {
+			stream.close();
+		}
+		definePackageFor(name, manifest, url);
+		CodeSigner[] signers = entry == null ? null : entry.getCodeSigners();
+		return defineClass(name, bytes, 0, bytes.length, new CodeSource(url, signers));
+	}
+
+	/**
+	 * Creates the url of an entry in a jar
+	 * 
+	 * @param archive
+	 *            The jar
+	 * @param entry
+	 *            The entry
+	 * @return The url
+	 * @since 1.0.0
+	 * @throws MalformedURLException
+	 *             If the url could not be created
+	 */
+	private static URL getEntryUrl(Archive archive, JarEntry entry) throws MalformedURLException {
+		return new URL("jar:".concat(archive.url.toExternalForm()).concat("!/").concat(getRealName(entry)));
+	}
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		synchronized (getClassLoadingLock(name)) {
+			Class<?> cls = findLoadedClass(name);
+			if (cls == null) {
+				if (name.startsWith(LIBRARY_PACKAGE)) {
+					cls = library.loadClass(name);
+				} else {
+					try {
+						cls = getParent().loadClass(name);
+					} catch (ClassNotFoundException ex) {
+						try {
+							cls = findClass(name);
+						} catch (ClassNotFoundException e) {
+							cls = library.loadClass(name);
+						}
+					}
+				}
+			}
+			if (resolve) {
+				resolveClass(cls);
+			}
+			return cls;
+		}
+	}
+
+	/**
+	 * Finds a class in the jars and directories that have been added
+	 * 
+	 * @param name
+	 *            The name of the class
+	 * @param path
+	 *            The path of the class file
+	 * @return The class, or <code>null</code> if it was not found
+	 * @since 1.0.0
+	 * @throws ClassNotFoundException
+	 *             If the class could not be read
+	 */
+	private Class<?> findAdded(String name, String path) throws ClassNotFoundException {
+		try {
+			List<Archive> list = index.get(getDirectory(path));
+			if (list != null) {
+				for (Archive archive : list) {
+					JarEntry entry = archive.jar.getJarEntry(path);
+					if (entry != null) {
+						return define(name, archive.jar.getInputStream(entry), archive.manifest, archive.url, entry);
+					}
+				}
+			}
+			for (File dir : directories) {
+				File file = new File(dir, path);
+				if (file.isFile()) {
+					return define(name, new FileInputStream(file), null, dir.toURI().toURL(), null);
+				}
+			}
+		} catch (IOException ex) {
+			throw new ClassNotFoundException(name, ex);
+		}
+		return null;
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		String path = name.replace('.', '/').concat(".class");
+		Class<?> cls = findAdded(name, path);
+		while (cls == null && downloadFor(path)) {
+			cls = findAdded(name, path);
+		}
+		if (cls == null) {
+			throw new ClassNotFoundException(name);
+		}
+		return cls;
+	}
+
+	/**
+	 * Finds a resource in the jars and directories that have been added
+	 * 
+	 * @param name
+	 *            The path of the resource
+	 * @return The url of the resource, or <code>null</code> if it was not
+	 *         found
+	 * @since 1.0.0
+	 */
+	private URL findAddedResource(String name) {
+		try {
+			List<Archive> list = index.get(getDirectory(name));
+			if (list != null) {
+				for (Archive archive : list) {
+					JarEntry entry = archive.jar.getJarEntry(name);
+					if (entry != null) {
+						return getEntryUrl(archive, entry);
+					}
+				}
+			}
+			for (File dir : directories) {
+				File file = new File(dir, name);
+				if (file.exists()) {
+					return file.toURI().toURL();
+				}
+			}
+		} catch (MalformedURLException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public URL findResource(String name) {
+		URL url = findAddedResource(name);
+		while (url == null && downloadFor(name)) {
+			url = findAddedResource(name);
+		}
+		return url;
+	}
+
+	@Override
+	public Enumeration<URL> findResources(String name) throws IOException {
+		// Every copy of the resource has to be listed, so nothing can be left
+		// pending
+		downloadAll();
+		Vector<URL> urls = new Vector<URL>();
+		List<Archive> list = index.get(getDirectory(name));
+		if (list != null) {
+			for (Archive archive : list) {
+				JarEntry entry = archive.jar.getJarEntry(name);
+				if (entry != null) {
+					urls.add(getEntryUrl(archive, entry));
+				}
+			}
+		}
+		for (File dir : directories) {
+			File file = new File(dir, name);
+			if (file.exists()) {
+				urls.add(file.toURI().toURL());
+			}
+		}
+		return urls.elements();
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException e = null;
+		for (List<Archive> list : index.values()) {
+			for (Archive archive : list) {
+				try {
+					archive.jar.close();
+				} catch (IOException ex) {
+					e = ex;
+				}
+			}
+		}
+		super.close();
+		if (e != null) {
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates a new class loader with an empty classpath
+	 * 
+	 * @param library
+	 *            The class loader that loaded this library
+	 * @since 1.0.0
+	 */
+	DependencyClassLoader(ClassLoader library) {
+		super(new URL[0], ClassLoader.getSystemClassLoader().getParent());
+		this.library = library;
+		index = new ConcurrentHashMap<String, List<Archive>>();
+		directories = new CopyOnWriteArrayList<File>();
+		added = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+		pending = new ConcurrentHashMap<Dependency, FutureTask<?>>();
+		blocked = Collections.newSetFromMap(new ConcurrentHashMap<Dependency, Boolean>());
+	}
+}
@@ -0,0 +1,336 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The dependency graph of a resolution after versions have been mediated. When
+ * more than one version of the same artifact is requested, the version that is
+ * nearest to the roots of the graph wins (and the one that was declared first
+ * if they are at the same depth), the same as in Maven. Only the winning
+ * versions are downloaded and injected into the classpath.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public final class DependencyGraph {
+	/**
+	 * The dependencies that were requested directly
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<Dependency> roots;
+	/**
+	 * The mediated dependencies of each node in the graph
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<Dependency, List<Dependency>> children;
+	/**
+	 * The version of each artifact that won mediation, keyed by
+	 * <code>groupId:artifactId</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, Dependency> selected;
+	/**
+	 * The requested versions that lost mediation
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<Dependency> omitted;
+	/**
+	 * All of the dependencies that are on the classpath for this graph, in the
+	 * order they won mediation
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<Dependency> dependencies;
+	/**
+	 * The dependencies whose jars are only downloaded once they are needed
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<Dependency> deferred;
+	/**
+	 * If the parents and boms of every pom in the graph could be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private volatile boolean complete;
+	/**
+	 * If a version in the graph was picked from the versions in the
+	 * repositories or is a snapshot, so the graph can change without any of
+	 * the poms changing
+	 * 
+	 * @since 1.0.0
+	 */
+	private volatile boolean dynamic;
+
+	/**
+	 * Gets the dependencies that were requested directly
+	 * 
+	 * @return The list of dependencies, in the order they were declared
+	 * @since 1.0.0
+	 */
+	public List<Dependency> getRoots() {
+		return Collections.unmodifiableList(roots);
+	}
+
+	/**
+	 * Gets the dependencies of a node in the graph, after mediation. The
+	 * dependencies of artifacts that were already resolved by an earlier call
+	 * are not listed.
+	 * 
+	 * @param dep
+	 *            The node
+	 * @return The list of dependencies, in the order they were declared
+	 * @since 1.0.0
+	 */
+	public List<Dependency> getChildren(Dependency dep) {
+		List<Dependency> list = children.get(dep);
+		if (list == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * Gets the version of an artifact that won mediation
+	 * 
+	 * @param groupId
+	 *            The group ID of the artifact
+	 * @param artifactId
+	 *            The artifact ID
+	 * @return The dependency, or <code>null</code> if the artifact is not in
+	 *         the graph
+	 * @since 1.0.0
+	 */
+	public Dependency getSelected(String groupId, String artifactId) {
+		return selected.get(groupId.concat(":").concat(artifactId));
+	}
+
+	/**
+	 * Gets all of the nodes in the graph
+	 * 
+	 * @return The versions that won mediation, in the order they were reached
+	 * @since 1.0.0
+	 */
+	public Collection<Dependency> getNodes() {
+		return Collections.unmodifiableCollection(selected.values());
+	}
+
+	/**
+	 * Gets the versions that were requested somewhere in the graph but lost
+	 * mediation, so they were not downloaded
+	 * 
+	 * @return The set of dependencies
+	 * @since 1.0.0
+	 */
+	public Set<Dependency> getOmitted() {
+		return Collections.unmodifiableSet(omitted);
+	}
+
+	/**
+	 * Gets all of the dependencies that are on the classpath for this graph,
+	 * including the dependencies of artifacts that were resolved by an earlier
+	 * call
+	 * 
+	 * @return The set of dependencies, in the order they won mediation
+	 * @since 1.0.0
+	 */
+	public Set<Dependency> getDependencies() {
+		return Collections.unmodifiableSet(dependencies);
+	}
+
+	/**
+	 * Gets the dependencies that are on the classpath for this graph but whose
+	 * jars were not downloaded yet, because they are only downloaded the first
+	 * time a class or resource from them is needed
+	 * 
+	 * @return The set of dependencies
+	 * @since 1.0.0
+	 */
+	public Set<Dependency> getDeferred() {
+		return Collections.unmodifiableSet(deferred);
+	}
+
+	/**
+	 * Finds the version of an artifact that won mediation
+	 * 
+	 * @param dep
+	 *            Any version of the artifact
+	 * @return The dependency, or <code>null</code> if the artifact is not in
+	 *         the graph yet
+	 * @since 1.0.0
+	 */
+	Dependency getSelected(Dependency dep) {
+		return selected.get(dep.getArtifactKey());
+	}
+
+	/**
+	 * Records that a version of an artifact won mediation
+	 * 
+	 * @param dep
+	 *            The dependency, with its version resolved
+	 * @since 1.0.0
+	 */
+	void select(Dependency dep) {
+		if (!selected.containsKey(dep.getArtifactKey())) {
+			selected.put(dep.getArtifactKey(), dep);
+		}
+	}
+
+	/**
+	 * Records an edge in the graph
+	 * 
+	 * @param parent
+	 *            The node that declared the dependency, or <code>null</code>
+	 *            if it was requested directly
+	 * @param child
+	 *            The version of the dependency that won mediation
+	 * @since 1.0.0
+	 */
+	void addEdge(Dependency parent, Dependency child) {
+		List<Dependency> list;
+		if (parent == null) {
+			list = roots;
+		} else {
+			list = children.get(parent);
+			if (list == null) {
+				list = new ArrayList<Dependency>();
+				children.put(parent, list);
+			}
+		}
+		if (!list.contains(child)) {
+			list.add(child);
+		}
+	}
+
+	/**
+	 * Records that a requested version lost mediation, unless the version
+	 * that won satisfies the request anyways
+	 * 
+	 * @param requested
+	 *            The version that was requested
+	 * @param winner
+	 *            The version that won, with its version resolved
+	 * @since 1.0.0
+	 */
+	void omit(Dependency requested, Dependency winner) {
+		if (requested.getVersionRange() != null) {
+			if (!requested.allows(winner)) {
+				omitted.add(requested);
+			}
+		} else if (requested.getVersion() != null && !requested.getVersion().equals(winner.getVersion())) {
+			omitted.add(requested);
+		}
+	}
+
+	/**
+	 * Adds dependencies to the classpath of this graph. The ones that are
+	 * nodes of this graph are added in the order they won mediation, and the
+	 * rest (which were only reached by an earlier call) are added after them
+	 * sorted by their coordinates, so the classpath is the same on every run.
+	 * 
+	 * @param deps
+	 *            The dependencies
+	 * @since 1.0.0
+	 */
+	void addDependencies(Collection<Dependency> deps) {
+		Set<Dependency> remaining = new HashSet<Dependency>(deps);
+		for (Dependency dep : selected.values()) {
+			if (remaining.remove(dep)) {
+				dependencies.add(dep);
+			}
+		}
+		List<Dependency> rest = new ArrayList<Dependency>(remaining);
+		Collections.sort(rest, new Comparator<Dependency>() {
+			@Override
+			public int compare(Dependency a, Dependency b) {
+				return a.toString().compareTo(b.toString());
+			}
+		});
+		dependencies.addAll(rest);
+	}
+
+	/**
+	 * Records that the jar of a dependency is only downloaded once it is
+	 * needed
+	 * 
+	 * @param dep
+	 *            The dependency
+	 * @since 1.0.0
+	 */
+	void defer(Dependency dep) {
+		deferred.add(dep);
+	}
+
+	/**
+	 * Checks if the parents and boms of every pom in the graph could be
+	 * loaded. A graph that is not complete may change once they can be
+	 * loaded, so it should not be cached.
+	 * 
+	 * @return If the graph is complete
+	 * @since 1.0.0
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Records that a parent or bom of a pom in the graph could not be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	void markIncomplete() {
+		complete = false;
+	}
+
+	/**
+	 * Checks if a version in the graph was picked from the versions in the
+	 * repositories (because it was not specified or was a range) or is a
+	 * snapshot. Such a graph can change when a new version is deployed, so
+	 * caching it would override the update policies of the repositories.
+	 * 
+	 * @return If the graph is dynamic
+	 * @since 1.0.0
+	 */
+	boolean isDynamic() {
+		return dynamic;
+	}
+
+	/**
+	 * Records that a version in the graph was picked from the versions in the
+	 * repositories or is a snapshot
+	 * 
+	 * @since 1.0.0
+	 */
+	void markDynamic() {
+		dynamic = true;
+	}
+
+	/**
+	 * Creates a new empty graph
+	 * 
+	 * @since 1.0.0
+	 */
+	DependencyGraph() {
+		roots = new ArrayList<Dependency>();
+		children = new HashMap<Dependency, List<Dependency>>();
+		selected = new LinkedHashMap<String, Dependency>();
+		omitted = new LinkedHashSet<Dependency>();
+		dependencies = new LinkedHashSet<Dependency>();
+		deferred = new LinkedHashSet<Dependency>();
+		complete = true;
+	}
+}
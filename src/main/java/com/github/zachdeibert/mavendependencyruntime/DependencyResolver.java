@@ -0,0 +1,810 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves a dependency graph by downloading the independent nodes of the
+ * graph concurrently on a shared, bounded executor. Versions are mediated
+ * while the graph is built, before any jar is downloaded, so only one version
+ * of each artifact is fetched. In lazy mode, jars that are not in the local
+ * cache yet are left for the class loader to download when it first needs
+ * them, and in a staged launch they are also downloaded in the background.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class DependencyResolver {
+	/**
+	 * The maximum number of artifacts that are fetched at the same time
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int THREADS = Integer.getInteger("com.github.zachdeibert.mavendependencyruntime.threads", 8);
+	/**
+	 * The executor that is shared between all resolution runs, or
+	 * <code>null</code> if it has not been created yet
+	 * 
+	 * @since 1.0.0
+	 */
+	private static ExecutorService executor;
+	/**
+	 * The packages whose artifacts are always downloaded while resolving, even
+	 * in lazy mode, which are configured as a comma-separated list with the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.eagerPackages</code>
+	 * system property or the
+	 * <code>MAVEN_DEPENDENCY_RUNTIME_EAGER_PACKAGES</code> environment
+	 * variable
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String[] EAGER_PACKAGES = MavenDependencies
+			.getSetting("com.github.zachdeibert.mavendependencyruntime.eagerPackages",
+					"MAVEN_DEPENDENCY_RUNTIME_EAGER_PACKAGES", "")
+			.split(",");
+	/**
+	 * The registry of dependencies that have already been claimed
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ResolutionRegistry registry;
+	/**
+	 * The local cache tiers to look for artifacts in and download them into
+	 * 
+	 * @since 1.0.0
+	 */
+	private final LocalCache cache;
+	/**
+	 * The builder that shares the effective models of parent poms between
+	 * resolution runs
+	 * 
+	 * @since 1.0.0
+	 */
+	private final EffectivePomBuilder poms;
+	/**
+	 * The claim in the registry for this run
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ResolutionRegistry.Resolution resolution;
+	/**
+	 * The mediated dependency graph that is built by this run
+	 * 
+	 * @since 1.0.0
+	 */
+	private final DependencyGraph graph;
+	/**
+	 * The class loader to leave the downloads of jars to, or
+	 * <code>null</code> if all of the jars are downloaded while resolving
+	 * 
+	 * @since 1.0.0
+	 */
+	private final DependencyClassLoader lazyLoader;
+	/**
+	 * The staged launch that the application is started with, or
+	 * <code>null</code> if it is not started until all of the jars have been
+	 * downloaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private final StagedLaunch staged;
+	/**
+	 * The first error that occurred while resolving, or <code>null</code> if
+	 * no error has occurred
+	 * 
+	 * @since 1.0.0
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * A unit of work that is run on the executor
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private abstract class Task implements Runnable {
+		/**
+		 * The list of repositories to try to download from
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<Repository> repositories;
+		/**
+		 * The dependency to work on
+		 * 
+		 * @since 1.0.0
+		 */
+		Dependency dependency;
+		/**
+		 * The latch to count down once the task has finished
+		 * 
+		 * @since 1.0.0
+		 */
+		CountDownLatch latch;
+
+		/**
+		 * Does the work of the task
+		 * 
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		abstract void execute() throws IOException;
+
+		@Override
+		public void run() {
+			try {
+				if (failure == null) {
+					execute();
+				}
+			} catch (IOException ex) {
+				fail(ex);
+			} catch (RuntimeException ex) {
+				fail(new IOException(String.format("Unable to resolve %s", dependency), ex));
+			} finally {
+				latch.countDown();
+			}
+		}
+
+		/**
+		 * Creates a new task
+		 * 
+		 * @param repositories
+		 *            The list of repositories to try to download from
+		 * @param dependency
+		 *            The dependency to work on
+		 * @since 1.0.0
+		 */
+		Task(List<Repository> repositories, Dependency dependency) {
+			this.repositories = repositories;
+			this.dependency = dependency;
+		}
+	}
+
+	/**
+	 * A single node in the dependency graph, which resolves the version of the
+	 * dependency and reads its pom without downloading its jar
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private final class Node extends Task {
+		/**
+		 * The nodes that declared this dependency, where <code>null</code> is
+		 * used if it was requested directly
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<Dependency> parents;
+		/**
+		 * The dependencies that were requested by each of the parents
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<Dependency> requests;
+		/**
+		 * The dependencies on the path from the roots to this node whose
+		 * exclusions apply to the dependencies of this node
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<Dependency> excluders;
+		/**
+		 * The depth of this node in the graph
+		 * 
+		 * @since 1.0.0
+		 */
+		final int depth;
+		/**
+		 * If this run owns the dependency, so it needs to download it
+		 * 
+		 * @since 1.0.0
+		 */
+		boolean owned;
+		/**
+		 * The list of repositories to download the dependencies of this node
+		 * from
+		 * 
+		 * @since 1.0.0
+		 */
+		List<Repository> childRepositories;
+		/**
+		 * The dependencies declared by this node, or <code>null</code> if it
+		 * does not have a pom
+		 * 
+		 * @since 1.0.0
+		 */
+		List<Dependency> children;
+
+		@Override
+		void execute() throws IOException {
+			if (dependency.getVersion() == null) {
+				graph.markDynamic();
+				dependency = resolveVersion(repositories, dependency);
+			} else if (dependency.isSnapshot()) {
+				graph.markDynamic();
+			}
+			ResolutionRegistry.Claim claim = registry.claim(dependency, resolution);
+			if (claim.getOwner() != resolution) {
+				resolution.addDependsOn(claim.getOwner());
+				dependency = claim.getDependency();
+				return;
+			}
+			owned = true;
+			log(depth, "Resolving dependency %s", dependency);
+			File pom = cache.use(dependency, "pom");
+			if (!pom.exists() && !cache.locate(dependency, "jar").exists()) {
+				pom = poms.fetch(dependency, repositories);
+			}
+			if (pom.exists()) {
+				PomSidecar parsed = PomSidecar.load(dependency, pom, MavenDependencies.getDefaultScopes(), poms, repositories);
+				childRepositories = parsed.getRepositories();
+				children = parsed.getDependencies();
+				if (!parsed.isComplete()) {
+					graph.markIncomplete();
+				}
+			}
+		}
+
+		/**
+		 * Creates a new node
+		 * 
+		 * @param repositories
+		 *            The list of repositories to try to download from
+		 * @param dependency
+		 *            The dependency to resolve
+		 * @param parent
+		 *            The node that declared the dependency, or
+		 *            <code>null</code> if it was requested directly
+		 * @param excluders
+		 *            The dependencies on the path from the roots to this node
+		 *            that have exclusions
+		 * @param depth
+		 *            The depth of this node in the graph
+		 * @since 1.0.0
+		 */
+		Node(List<Repository> repositories, Dependency dependency, Dependency parent, List<Dependency> excluders,
+				int depth) {
+			super(repositories, dependency);
+			this.excluders = excluders;
+			parents = new ArrayList<Dependency>();
+			parents.add(parent);
+			requests = new ArrayList<Dependency>();
+			requests.add(dependency);
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * Downloads the jar of a dependency that won mediation
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private final class Fetch extends Task {
+		@Override
+		void execute() throws IOException {
+			fetchJar(repositories, dependency);
+			resolution.addResolved(dependency);
+		}
+
+		/**
+		 * Creates a new download
+		 * 
+		 * @param repositories
+		 *            The list of repositories to try to download from
+		 * @param dependency
+		 *            The dependency to download
+		 * @since 1.0.0
+		 */
+		Fetch(List<Repository> repositories, Dependency dependency) {
+			super(repositories, dependency);
+		}
+	}
+
+	/**
+	 * Creates the factory for the threads that fetch artifacts, which uses
+	 * virtual threads if the runtime supports them
+	 * 
+	 * @return The thread factory
+	 * @since 1.0.0
+	 */
+	private static ThreadFactory createThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderCls = Class.forName("java.lang.Thread$Builder");
+			builder = builderCls.getMethod("name", String.class, long.class).invoke(builder,
+					"maven-dependency-runtime-", 0L);
+			return (ThreadFactory) builderCls.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException ex) {
+		} catch (RuntimeException ex) {
+		}
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "maven-dependency-runtime-".concat(Integer.toString(count.getAndIncrement())));
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Gets the executor that is shared between all resolution runs
+	 * 
+	 * @return The executor
+	 * @since 1.0.0
+	 */
+	static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(Math.max(THREADS, 1), createThreadFactory());
+		}
+		return executor;
+	}
+
+	/**
+	 * Warms up the connections to a list of repositories in the background, so
+	 * they are ready by the time the first artifact is fetched
+	 * 
+	 * @param repositories
+	 *            The repositories to connect to
+	 * @since 1.0.0
+	 */
+	static void warmUp(List<Repository> repositories) {
+		for (final Repository repo : repositories) {
+			getExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					repo.warmUp();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Logs a message for a node in the graph if logging is enabled
+	 * 
+	 * @param depth
+	 *            The depth of the node in the graph
+	 * @param format
+	 *            The format string of the message
+	 * @param args
+	 *            The arguments to the format string
+	 * @since 1.0.0
+	 */
+	private static void log(int depth, String format, Object... args) {
+		if (MavenDependencies.ENABLE_LOGGING) {
+			StringBuilder indent = new StringBuilder();
+			for (int i = 0; i < depth; ++i) {
+				indent.append(' ');
+			}
+			System.out.printf("%s%s\n", indent, String.format(format, args));
+		}
+	}
+
+	/**
+	 * Records an error that occurred while resolving
+	 * 
+	 * @param ex
+	 *            The error
+	 * @since 1.0.0
+	 */
+	private synchronized void fail(IOException ex) {
+		if (failure == null) {
+			failure = ex;
+		} else {
+			failure.addSuppressed(ex);
+		}
+	}
+
+	/**
+	 * Runs a list of tasks on the executor and waits for all of them to finish
+	 * 
+	 * @param tasks
+	 *            The tasks to run
+	 * @since 1.0.0
+	 */
+	private void runAll(List<? extends Task> tasks) {
+		CountDownLatch latch = new CountDownLatch(tasks.size());
+		for (Task task : tasks) {
+			task.latch = latch;
+			try {
+				getExecutor().execute(task);
+			} catch (RuntimeException ex) {
+				latch.countDown();
+				fail(new IOException(String.format("Unable to resolve %s", task.dependency), ex));
+			}
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			fail(new IOException("Interrupted while resolving dependencies", ex));
+		}
+	}
+
+	/**
+	 * Adds a dependency to the next level of the graph, unless it is an
+	 * optional dependency of another dependency, it is excluded by one of the
+	 * dependencies on its path, or a version of the same artifact is already
+	 * nearer to the roots or has been claimed by another run
+	 * 
+	 * @param level
+	 *            The nodes in the next level, keyed by
+	 *            <code>groupId:artifactId</code>
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param dependency
+	 *            The dependency to add
+	 * @param parent
+	 *            The node that declared the dependency, or <code>null</code>
+	 *            if it was requested directly
+	 * @param excluders
+	 *            The dependencies on the path from the roots to the parent
+	 *            whose exclusions apply to the dependency
+	 * @param depth
+	 *            The depth of the next level
+	 * @since 1.0.0
+	 */
+	private void enqueue(Map<String, Node> level, List<Repository> repositories, Dependency dependency,
+			Dependency parent, List<Dependency> excluders, int depth) {
+		if (parent != null && dependency.isOptional()) {
+			log(depth, "Skipping optional dependency %s", dependency);
+			return;
+		}
+		for (Dependency excluder : excluders) {
+			if (excluder.excludes(dependency)) {
+				log(depth, "Skipping dependency %s excluded by %s", dependency, excluder);
+				return;
+			}
+		}
+		Dependency winner = graph.getSelected(dependency);
+		if (winner == null) {
+			ResolutionRegistry.Claim claim = registry.find(dependency);
+			if (claim != null && claim.getOwner() != resolution) {
+				resolution.addDependsOn(claim.getOwner());
+				winner = claim.getDependency();
+				graph.select(winner);
+				if (dependency.getVersion() == null || winner.isSnapshot()) {
+					graph.markDynamic();
+				}
+			}
+		}
+		if (winner != null) {
+			if (!dependency.allows(winner)) {
+				// The winner is nearer to the roots and its dependencies have
+				// already been resolved, so it cannot be replaced any more
+				log(depth, "Version conflict: %s is nearer to the roots, but %s requires %s", winner,
+						parent == null ? "the application" : parent, dependency.getVersionRange());
+			}
+			graph.addEdge(parent, winner);
+			graph.omit(dependency, winner);
+			return;
+		}
+		Node node = level.get(dependency.getArtifactKey());
+		if (node == null) {
+			level.put(dependency.getArtifactKey(), new Node(repositories, dependency, parent, excluders, depth));
+		} else {
+			node.parents.add(parent);
+			node.requests.add(dependency);
+			if (!dependency.allows(node.dependency) && node.dependency.getVersionRange() == null) {
+				// A range at the same depth wins over a version that is only a
+				// recommendation when the version is outside of it
+				log(depth, "Using range %s of %s instead of %s, which is outside of it", dependency.getVersionRange(),
+						dependency.getArtifactKey(), node.dependency);
+				node.dependency = dependency;
+			} else if (!dependency.allows(node.dependency)) {
+				log(depth, "Version conflict: %s requires %s, but %s is requested at the same depth",
+						parent == null ? "the application" : parent, dependency.getVersionRange(), node.dependency);
+			}
+		}
+	}
+
+	/**
+	 * Determines which version of a dependency to download if it was not
+	 * specified. A version range is satisfied from the versions that are
+	 * already in the local cache if possible, so only ranges that no cached
+	 * version satisfies need to look at the repositories.
+	 * 
+	 * @param repositories
+	 *            The list of repositories to try to look up the version in
+	 * @param dependency
+	 *            The dependency to resolve the version of
+	 * @return The dependency with its version resolved
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If no version could be found
+	 */
+	private Dependency resolveVersion(List<Repository> repositories, Dependency dependency) throws IOException {
+		VersionRange range = dependency.getVersionRange();
+		if (range != null) {
+			List<Version> installed = new ArrayList<Version>();
+			for (Version ver : cache.getInstalledVersions(dependency)) {
+				Dependency candidate = dependency.withVersion(ver.toString());
+				if (cache.locate(candidate, "pom").exists()) {
+					installed.add(ver);
+				}
+			}
+			Version ver = range.select(installed);
+			if (ver != null) {
+				return dependency.withVersion(ver.toString());
+			}
+		}
+		IOException e = null;
+		for (Repository repo : repositories) {
+			try {
+				return repo.resolveVersion(dependency);
+			} catch (IOException ex) {
+				if (e == null) {
+					e = new IOException(String.format("Unable to find latest version of %s", dependency));
+				}
+				e.addSuppressed(ex);
+			}
+		}
+		Version max = null;
+		if (range == null) {
+			for (Version ver : cache.getInstalledVersions(dependency)) {
+				if (max == null || ver.compareTo(max) > 0) {
+					max = ver;
+				}
+			}
+		}
+		if (max == null) {
+			throw e == null ? new IOException(String.format("Unable to find latest version of %s", dependency)) : e;
+		}
+		return dependency.withVersion(max.toString());
+	}
+
+	/**
+	 * Downloads the jar of a dependency from the first repository that has it.
+	 * A missing jar is only an error if the pom says the artifact is packaged
+	 * as a jar.
+	 * 
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param dependency
+	 *            The dependency to download
+	 * @param jar
+	 *            The file to download the jar into
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If no repository could provide the dependency
+	 */
+	private void fetch(List<Repository> repositories, Dependency dependency, File jar) throws IOException {
+		jar.getParentFile().mkdirs();
+		IOException e = new IOException(String.format("Unable to find download for %s", dependency));
+		for (Repository repo : repositories) {
+			try {
+				repo.download(dependency, jar);
+				return;
+			} catch (IOException ex) {
+				e.addSuppressed(ex);
+			}
+		}
+		File pom = cache.locate(dependency, "pom");
+		if (!pom.exists() || PomModel.parse(pom).getPackaging("pom").equals("jar")) {
+			throw e;
+		}
+	}
+
+	/**
+	 * Downloads the jar of a dependency into the local cache if it is not
+	 * there yet, and records the packages in it once it is downloaded
+	 * 
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param dependency
+	 *            The dependency to download
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If no repository could provide the dependency
+	 */
+	private void fetchJar(List<Repository> repositories, Dependency dependency) throws IOException {
+		File jar = cache.locate(dependency, "jar");
+		if (!jar.exists()) {
+			ArtifactLocks.Lock lock = ArtifactLocks.acquire(dependency);
+			try {
+				jar = cache.locate(dependency, "jar");
+				if (!jar.exists()) {
+					fetch(repositories, dependency, jar);
+					ClassPathScanner.recordPackages(dependency, jar);
+				}
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	/**
+	 * Leaves the downloads of the jars that are not in the local cache yet to
+	 * the class loader, unless they contain one of the
+	 * {@link DependencyResolver#EAGER_PACKAGES} or the staged launch needs
+	 * them right away. In a staged launch, the downloads that are left to the
+	 * class loader are started in the background.
+	 * 
+	 * @param fetches
+	 *            The downloads of the jars that won mediation
+	 * @return The downloads that still have to be run while resolving
+	 * @since 1.0.0
+	 */
+	private List<Fetch> defer(List<Fetch> fetches) {
+		if (lazyLoader == null) {
+			return fetches;
+		}
+		List<Dependency> deps = new ArrayList<Dependency>();
+		for (Fetch fetch : fetches) {
+			deps.add(fetch.dependency);
+		}
+		Set<Dependency> eager = new HashSet<Dependency>();
+		for (String pkg : EAGER_PACKAGES) {
+			if (!pkg.trim().isEmpty()) {
+				eager.addAll(DependencyClassLoader.findPackage(deps, pkg.trim()));
+			}
+		}
+		List<Fetch> remaining = new ArrayList<Fetch>();
+		for (final Fetch fetch : fetches) {
+			if (eager.contains(fetch.dependency) || (staged != null && staged.isCritical(fetch.dependency))
+					|| cache.locate(fetch.dependency, "jar").exists()) {
+				remaining.add(fetch);
+			} else {
+				log(0, "Deferring download of %s", fetch.dependency);
+				resolution.addResolved(fetch.dependency);
+				graph.defer(fetch.dependency);
+				FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+					@Override
+					public Void call() throws IOException {
+						fetchJar(fetch.repositories, fetch.dependency);
+						MavenDependencies.injectClasspath(Collections.singleton(fetch.dependency));
+						return null;
+					}
+				});
+				lazyLoader.addLazy(fetch.dependency, task);
+				if (staged != null) {
+					getExecutor().execute(task);
+				}
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Waits for all of the other runs this run depends on to finish, so that
+	 * their artifacts are available before this run returns
+	 * 
+	 * @return The dependencies that were resolved by the other runs
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If one of the other runs failed
+	 */
+	private Set<Dependency> awaitOthers() throws IOException {
+		Set<Dependency> deps = new HashSet<Dependency>();
+		Set<ResolutionRegistry.Resolution> visited = new HashSet<ResolutionRegistry.Resolution>();
+		Queue<ResolutionRegistry.Resolution> queue = new ArrayDeque<ResolutionRegistry.Resolution>();
+		visited.add(resolution);
+		queue.addAll(resolution.getDependsOn());
+		while (!queue.isEmpty()) {
+			ResolutionRegistry.Resolution other = queue.remove();
+			if (visited.add(other)) {
+				other.await();
+				deps.addAll(other.getResolved());
+				queue.addAll(other.getDependsOn());
+			}
+		}
+		return deps;
+	}
+
+	/**
+	 * Downloads a list of dependencies along with all of their dependencies.
+	 * The graph is walked one level at a time, reading only the poms, so that
+	 * versions are mediated before any jar is downloaded.
+	 * 
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param dependencies
+	 *            The list of dependencies to download
+	 * @return The mediated dependency graph
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	DependencyGraph resolve(List<Repository> repositories, List<Dependency> dependencies) throws IOException {
+		Map<String, Node> level = new LinkedHashMap<String, Node>();
+		for (Dependency dep : dependencies) {
+			enqueue(level, repositories, dep, null, Collections.<Dependency>emptyList(), 0);
+		}
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		while (!level.isEmpty() && failure == null) {
+			List<Node> nodes = new ArrayList<Node>(level.values());
+			runAll(nodes);
+			if (failure != null) {
+				break;
+			}
+			for (Node node : nodes) {
+				graph.select(node.dependency);
+				for (Dependency parent : node.parents) {
+					graph.addEdge(parent, node.dependency);
+				}
+				for (Dependency request : node.requests) {
+					graph.omit(request, node.dependency);
+				}
+				if (node.owned) {
+					fetches.add(new Fetch(node.repositories, node.dependency));
+				}
+			}
+			level = new LinkedHashMap<String, Node>();
+			for (Node node : nodes) {
+				if (node.owned && node.children != null) {
+					List<Dependency> excluders = node.excluders;
+					if (!node.dependency.getExclusions().isEmpty()) {
+						excluders = new ArrayList<Dependency>(excluders);
+						excluders.add(node.dependency);
+					}
+					for (Dependency child : node.children) {
+						enqueue(level, node.childRepositories, child, node.dependency, excluders, node.depth + 1);
+					}
+				}
+			}
+		}
+		if (failure == null) {
+			runAll(defer(fetches));
+		}
+		if (failure != null) {
+			registry.release(resolution);
+			resolution.finish(failure);
+			throw failure;
+		}
+		resolution.finish(null);
+		graph.addDependencies(resolution.getResolved());
+		graph.addDependencies(awaitOthers());
+		return graph;
+	}
+
+	/**
+	 * Creates a new resolution run
+	 * 
+	 * @param registry
+	 *            The registry of dependencies that have already been claimed
+	 * @param cache
+	 *            The local cache tiers to look for artifacts in and download
+	 *            them into
+	 * @param poms
+	 *            The builder that shares the effective models of parent poms
+	 *            between resolution runs
+	 * @param lazyLoader
+	 *            The class loader to leave the downloads of jars to, or
+	 *            <code>null</code> to download all of the jars while
+	 *            resolving
+	 * @param staged
+	 *            The staged launch that the application is started with, or
+	 *            <code>null</code> if it is not started until all of the jars
+	 *            have been downloaded
+	 * @since 1.0.0
+	 */
+	DependencyResolver(ResolutionRegistry registry, LocalCache cache, EffectivePomBuilder poms,
+			DependencyClassLoader lazyLoader, StagedLaunch staged) {
+		this.registry = registry;
+		this.cache = cache;
+		this.poms = poms;
+		this.lazyLoader = lazyLoader;
+		this.staged = staged;
+		resolution = new ResolutionRegistry.Resolution();
+		graph = new DependencyGraph();
+	}
+}
@@ -0,0 +1,500 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The effective model of a pom, after the dependencies, managed dependencies
+ * and repositories of its parents and imported boms have been merged into it
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class EffectivePom extends PropertyInterpolator {
+	/**
+	 * The model of the pom itself
+	 * 
+	 * @since 1.0.0
+	 */
+	private final PomModel model;
+	/**
+	 * The effective model of the parent pom, or <code>null</code> if there is
+	 * no parent or it could not be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private final EffectivePom parent;
+	/**
+	 * The dependencies of the pom, including the ones inherited from its
+	 * parents, before any variables have been substituted
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<PomModel.DependencyModel> dependencies;
+	/**
+	 * The managed dependencies that are declared in the pom and its parents
+	 * (not including the ones imported from boms), before any variables have
+	 * been substituted. The ones from the parents come first.
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<PomModel.DependencyModel> declaredManaged;
+	/**
+	 * The managed dependencies that are declared in the pom and its parents,
+	 * keyed by {@link EffectivePom#getManagementKey(String, String, String)}.
+	 * Their variables have been substituted in the context of this pom, so a
+	 * property that is overridden here also changes the inherited ones.
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, PomModel.DependencyModel> managed;
+	/**
+	 * The managed dependencies that were imported from the boms of this pom
+	 * (but not its parents), keyed by
+	 * {@link EffectivePom#getManagementKey(String, String, String)}. Their
+	 * variables have been substituted in the context of the bom that declared
+	 * them.
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, PomModel.DependencyModel> imported;
+	/**
+	 * The properties of the pom, including the ones inherited from its
+	 * parents, before any variables have been substituted
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, String> properties;
+	/**
+	 * The pom files this model was built from (not including the pom itself)
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<File> sources;
+	/**
+	 * If all of the parents and boms of the pom could be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private boolean complete;
+
+	/**
+	 * Gets the ID of the group of the project
+	 * 
+	 * @return The group ID
+	 * @since 1.0.0
+	 */
+	String getGroupId() {
+		return model.getGroupId();
+	}
+
+	/**
+	 * Gets the ID of the artifact of the project
+	 * 
+	 * @return The artifact ID
+	 * @since 1.0.0
+	 */
+	String getArtifactId() {
+		return model.getArtifactId();
+	}
+
+	/**
+	 * Gets the version of the project
+	 * 
+	 * @return The version
+	 * @since 1.0.0
+	 */
+	String getVersion() {
+		return model.getVersion();
+	}
+
+	/**
+	 * Gets the model of the pom itself
+	 * 
+	 * @return The model
+	 * @since 1.0.0
+	 */
+	PomModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Gets the pom files of the parents and imported boms this model was
+	 * built from
+	 * 
+	 * @return The list of files
+	 * @since 1.0.0
+	 */
+	List<File> getSources() {
+		return Collections.unmodifiableList(sources);
+	}
+
+	/**
+	 * Checks if all of the parents and boms of the pom could be loaded. A
+	 * model that is not complete can change once they can be loaded, so it
+	 * should not be cached.
+	 * 
+	 * @return If the model is complete
+	 * @since 1.0.0
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Records that a parent or bom of the pom could not be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	void markIncomplete() {
+		complete = false;
+	}
+
+	/**
+	 * Gets the managed dependencies of the pom that are boms to import
+	 * 
+	 * @return The list of boms, with their variables substituted
+	 * @since 1.0.0
+	 */
+	List<Dependency> getImports() {
+		List<Dependency> imports = new ArrayList<Dependency>();
+		for (PomModel.DependencyModel dep : model.getManagedDependencies()) {
+			if ("import".equals(dep.getScope()) && "pom".equals(dep.getType())) {
+				try {
+					String version = interpolate(dep.getVersion(), null);
+					if (version.indexOf('[') < 0 && version.indexOf('(') < 0) {
+						imports.add(Dependency.valueOf(interpolate(dep.getGroupId(), null),
+								interpolate(dep.getArtifactId(), null), version, DependencyScope.COMPILE));
+					}
+				} catch (ParseException ex) {
+					if (MavenDependencies.ENABLE_LOGGING) {
+						ex.printStackTrace();
+					}
+				}
+			}
+		}
+		return imports;
+	}
+
+	/**
+	 * Merges the managed dependencies of an imported bom into this model.
+	 * Dependencies that are already managed by this model are not changed.
+	 * 
+	 * @param bom
+	 *            The effective model of the bom
+	 * @param file
+	 *            The pom file of the bom
+	 * @since 1.0.0
+	 */
+	void importManaged(EffectivePom bom, File file) {
+		for (Map.Entry<String, PomModel.DependencyModel> entry : bom.getAllManaged().entrySet()) {
+			if (!imported.containsKey(entry.getKey())) {
+				imported.put(entry.getKey(), entry.getValue());
+			}
+		}
+		sources.add(file);
+		sources.addAll(bom.sources);
+		complete &= bom.complete;
+	}
+
+	/**
+	 * Gets the managed dependency for a key. The ones declared in the pom and
+	 * its parents come first, then the ones imported by the pom, then the ones
+	 * imported by each of its parents.
+	 * 
+	 * @param key
+	 *            The key from
+	 *            {@link EffectivePom#getManagementKey(String, String, String)}
+	 * @return The managed dependency, or <code>null</code> if it is not
+	 *         managed
+	 * @since 1.0.0
+	 */
+	private PomModel.DependencyModel getManaged(String key) {
+		PomModel.DependencyModel node = managed.get(key);
+		for (EffectivePom pom = this; node == null && pom != null; pom = pom.parent) {
+			node = pom.imported.get(key);
+		}
+		return node;
+	}
+
+	/**
+	 * Gets all of the managed dependencies of the pom, in the same order of
+	 * precedence as {@link EffectivePom#getManaged(String)}
+	 * 
+	 * @return The managed dependencies, keyed by
+	 *         {@link EffectivePom#getManagementKey(String, String, String)}
+	 * @since 1.0.0
+	 */
+	private Map<String, PomModel.DependencyModel> getAllManaged() {
+		Map<String, PomModel.DependencyModel> all = new LinkedHashMap<String, PomModel.DependencyModel>(managed);
+		for (EffectivePom pom = this; pom != null; pom = pom.parent) {
+			for (Map.Entry<String, PomModel.DependencyModel> entry : pom.imported.entrySet()) {
+				if (!all.containsKey(entry.getKey())) {
+					all.put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * Gets the value of one of the fields of the project
+	 * 
+	 * @param field
+	 *            The name of the field
+	 * @return The value, or <code>null</code> if it is not defined
+	 * @since 1.0.0
+	 */
+	private String getField(String field) {
+		if (field.equals("groupId")) {
+			return getGroupId();
+		} else if (field.equals("artifactId")) {
+			return getArtifactId();
+		} else if (field.equals("version")) {
+			return getVersion();
+		} else if (field.equals("packaging")) {
+			return model.getPackaging("jar");
+		} else if (field.equals("parent.groupId")) {
+			return model.getParentGroupId();
+		} else if (field.equals("parent.artifactId")) {
+			return model.getParentArtifactId();
+		} else if (field.equals("parent.version")) {
+			return model.getParentVersion();
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	protected String getValue(String key) {
+		if (key.startsWith("project.")) {
+			return getField(key.substring("project.".length()));
+		} else if (key.startsWith("pom.")) {
+			return getField(key.substring("pom.".length()));
+		}
+		String value = properties.get(key);
+		if (value == null) {
+			value = getEnvironmentValue(key);
+		}
+		if (value == null) {
+			value = getField(key);
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the list of repositories that are declared in the pom or any of its
+	 * parents
+	 * 
+	 * @return The list of repositories, in the order they should be tried
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the repositories could not be parsed
+	 */
+	List<Repository> getDeclaredRepositories() throws IOException {
+		List<Repository> repos = new ArrayList<Repository>();
+		try {
+			for (PomModel.RepositoryModel repo : model.getRepositories()) {
+				repos.add(new Repository(this, repo));
+			}
+		} catch (ParseException ex) {
+			throw new IOException("Unable to parse repositories", ex);
+		}
+		if (parent != null) {
+			repos.addAll(parent.getDeclaredRepositories());
+		}
+		return repos;
+	}
+
+	/**
+	 * Gets the dependencies of the pom that are in one of the given scopes,
+	 * with their versions and scopes taken from the managed dependencies if
+	 * they are not specified, and the exclusions of the managed dependencies
+	 * added to their own
+	 * 
+	 * @param scopes
+	 *            The scopes to download for
+	 * @return The list of dependencies
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the dependencies could not be parsed
+	 */
+	List<Dependency> getDependencies(Set<DependencyScope> scopes) throws IOException {
+		List<Dependency> deps = new ArrayList<Dependency>();
+		try {
+			for (PomModel.DependencyModel node : dependencies) {
+				String groupId = interpolate(node.getGroupId(), null);
+				String artifactId = interpolate(node.getArtifactId(), null);
+				PomModel.DependencyModel managedNode = getManaged(getManagementKey(groupId, artifactId, node.getType()));
+				String version = Dependency.LATEST_VERSION;
+				String scope = "compile";
+				List<String> exclusions = interpolateExclusions(node.getExclusions());
+				if (managedNode != null) {
+					if (managedNode.getVersion() != null) {
+						version = managedNode.getVersion();
+					}
+					if (managedNode.getScope() != null) {
+						scope = managedNode.getScope();
+					}
+					if (!managedNode.getExclusions().isEmpty()) {
+						exclusions = new ArrayList<String>(exclusions);
+						exclusions.addAll(managedNode.getExclusions());
+					}
+				}
+				Dependency dep = Dependency.valueOf(groupId, artifactId, interpolate(node.getVersion(), version),
+						DependencyScope.valueOf(interpolate(node.getScope(), scope).toUpperCase()),
+						Boolean.parseBoolean(interpolate(node.getOptional(), "false")), exclusions);
+				if (scopes.contains(dep.getScope())) {
+					deps.add(dep);
+				}
+			}
+		} catch (ParseException ex) {
+			throw new IOException("Unable to parse dependencies", ex);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Unable to parse dependencies", ex);
+		}
+		return deps;
+	}
+
+	/**
+	 * Replaces all the variables in a string of text if they can be resolved
+	 * 
+	 * @param text
+	 *            The text to replace the variables in, or <code>null</code>
+	 * @return The text with all the variables replaced, or <code>null</code>
+	 *         if the text was <code>null</code> or could not be resolved
+	 * @since 1.0.0
+	 */
+	private String interpolateOrNull(String text) {
+		try {
+			return interpolate(text);
+		} catch (ParseException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the key that a dependency is managed by, which includes the type
+	 * for anything other than jars so that test jars and other attached
+	 * artifacts do not replace the management of the main artifact
+	 * 
+	 * @param groupId
+	 *            The group ID
+	 * @param artifactId
+	 *            The artifact ID
+	 * @param type
+	 *            The type, or <code>null</code> if it is not specified
+	 * @return The key
+	 * @since 1.0.0
+	 */
+	private static String getManagementKey(String groupId, String artifactId, String type) {
+		String key = groupId.concat(":").concat(artifactId);
+		if (type == null || type.equals("jar")) {
+			return key;
+		}
+		return key.concat(":").concat(type);
+	}
+
+	/**
+	 * Substitutes the variables in a managed dependency
+	 * 
+	 * @param node
+	 *            The managed dependency
+	 * @return The managed dependency with its variables substituted, or
+	 *         <code>null</code> if its coordinates could not be resolved
+	 * @since 1.0.0
+	 */
+	private PomModel.DependencyModel interpolateManaged(PomModel.DependencyModel node) {
+		String groupId = interpolateOrNull(node.getGroupId());
+		String artifactId = interpolateOrNull(node.getArtifactId());
+		if (groupId == null || artifactId == null) {
+			return null;
+		}
+		return new PomModel.DependencyModel(groupId, artifactId, interpolateOrNull(node.getVersion()),
+				interpolateOrNull(node.getScope()), node.getType(), node.getOptional(),
+				interpolateExclusions(node.getExclusions()));
+	}
+
+	/**
+	 * Substitutes the variables in the exclusions of a dependency. Exclusions
+	 * whose variables cannot be resolved are kept as they are.
+	 * 
+	 * @param exclusions
+	 *            The exclusions, as <code>groupId:artifactId</code>
+	 * @return The exclusions with their variables substituted
+	 * @since 1.0.0
+	 */
+	private List<String> interpolateExclusions(List<String> exclusions) {
+		if (exclusions.isEmpty()) {
+			return exclusions;
+		}
+		List<String> list = new ArrayList<String>(exclusions.size());
+		for (String exclusion : exclusions) {
+			String value = interpolateOrNull(exclusion);
+			list.add(value == null ? exclusion : value);
+		}
+		return list;
+	}
+
+	/**
+	 * Creates a new effective model
+	 * 
+	 * @param model
+	 *            The model of the pom itself
+	 * @param parent
+	 *            The effective model of the parent pom, or <code>null</code>
+	 *            if there is no parent or it could not be loaded
+	 * @param parentFile
+	 *            The pom file of the parent, or <code>null</code> if there is
+	 *            no parent
+	 * @since 1.0.0
+	 */
+	EffectivePom(PomModel model, EffectivePom parent, File parentFile) {
+		this.model = model;
+		this.parent = parent;
+		dependencies = new ArrayList<PomModel.DependencyModel>();
+		declaredManaged = new ArrayList<PomModel.DependencyModel>();
+		managed = new LinkedHashMap<String, PomModel.DependencyModel>();
+		imported = new LinkedHashMap<String, PomModel.DependencyModel>();
+		sources = new ArrayList<File>();
+		properties = new HashMap<String, String>();
+		complete = parent == null || parent.complete;
+		Set<String> ownDeps = new HashSet<String>();
+		for (PomModel.DependencyModel dep : model.getDependencies()) {
+			ownDeps.add(dep.getGroupId().concat(":").concat(dep.getArtifactId()));
+		}
+		if (parent != null) {
+			for (PomModel.DependencyModel dep : parent.dependencies) {
+				if (!ownDeps.contains(dep.getGroupId().concat(":").concat(dep.getArtifactId()))) {
+					dependencies.add(dep);
+				}
+			}
+			declaredManaged.addAll(parent.declaredManaged);
+			properties.putAll(parent.properties);
+			sources.add(parentFile);
+			sources.addAll(parent.sources);
+		}
+		dependencies.addAll(model.getDependencies());
+		properties.putAll(model.getProperties());
+		for (PomModel.DependencyModel dep : model.getManagedDependencies()) {
+			if (!"import".equals(dep.getScope())) {
+				declaredManaged.add(dep);
+			}
+		}
+		for (PomModel.DependencyModel dep : declaredManaged) {
+			PomModel.DependencyModel node = interpolateManaged(dep);
+			if (node != null) {
+				managed.put(getManagementKey(node.getGroupId(), node.getArtifactId(), node.getType()), node);
+			}
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Builds the effective models of poms, fetching their parents and imported
+ * boms as needed. The effective model of each parent and bom is only built
+ * once and is shared by all of the poms that inherit from it.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class EffectivePomBuilder {
+	/**
+	 * The local cache tiers to look for poms in and download them into
+	 * 
+	 * @since 1.0.0
+	 */
+	private final LocalCache cache;
+	/**
+	 * The effective models of the parents and boms that have been loaded, keyed
+	 * by <code>groupId:artifactId:version</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ConcurrentMap<String, FutureTask<EffectivePom>> loaded;
+
+	/**
+	 * Finds the pom of an artifact in the local cache, downloading it if it is
+	 * not there yet
+	 * 
+	 * @param dep
+	 *            The coordinates of the pom
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @return The pom file
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If no repository could provide the pom
+	 */
+	File fetch(Dependency dep, List<Repository> repositories) throws IOException {
+		File pom = cache.use(dep, "pom");
+		if (pom.exists()) {
+			return pom;
+		}
+		ArtifactLocks.Lock lock = ArtifactLocks.acquire(dep);
+		try {
+			pom = cache.use(dep, "pom");
+			if (pom.exists()) {
+				return pom;
+			}
+			pom.getParentFile().mkdirs();
+			IOException e = new IOException(String.format("Unable to find download for %s", dep));
+			for (Repository repo : repositories) {
+				try {
+					repo.download(dep, pom);
+					return pom;
+				} catch (IOException ex) {
+					e.addSuppressed(ex);
+				}
+			}
+			throw e;
+		} finally {
+			lock.release();
+		}
+	}
+
+	/**
+	 * Loads the effective model of a parent or bom, sharing it with every
+	 * other pom that needs it
+	 * 
+	 * @param dep
+	 *            The coordinates of the pom
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param chain
+	 *            The coordinates of the poms that are currently being loaded
+	 *            by this thread, used to detect cycles
+	 * @return The effective model
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the pom could not be loaded
+	 */
+	private EffectivePom load(final Dependency dep, final List<Repository> repositories, final Set<String> chain)
+			throws IOException {
+		final String key = dep.toString();
+		if (chain.contains(key)) {
+			throw new IOException(String.format("Cycle in the parents of %s", dep));
+		}
+		FutureTask<EffectivePom> task = new FutureTask<EffectivePom>(new Callable<EffectivePom>() {
+			@Override
+			public EffectivePom call() throws IOException {
+				Set<String> next = new HashSet<String>(chain);
+				next.add(key);
+				return build(PomModel.parse(fetch(dep, repositories)), repositories, next);
+			}
+		});
+		FutureTask<EffectivePom> existing = loaded.putIfAbsent(key, task);
+		if (existing == null) {
+			task.run();
+		} else {
+			task = existing;
+		}
+		try {
+			EffectivePom pom = task.get();
+			if (!pom.isComplete()) {
+				// try the missing parents and boms again the next time
+				loaded.remove(key, task);
+			}
+			return pom;
+		} catch (ExecutionException ex) {
+			loaded.remove(key, task);
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException(String.format("Unable to load %s", dep), ex.getCause());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException(String.format("Interrupted while loading %s", dep), ex);
+		}
+	}
+
+	/**
+	 * Builds the effective model of a pom
+	 * 
+	 * @param model
+	 *            The model of the pom
+	 * @param repositories
+	 *            The list of repositories to fetch parents and boms from, in
+	 *            addition to the ones declared in the pom
+	 * @param chain
+	 *            The coordinates of the poms that are currently being loaded
+	 *            by this thread, used to detect cycles
+	 * @return The effective model
+	 * @since 1.0.0
+	 */
+	private EffectivePom build(PomModel model, List<Repository> repositories, Set<String> chain) {
+		EffectivePom pom = new EffectivePom(model, null, null);
+		List<Repository> repos = new ArrayList<Repository>(repositories);
+		try {
+			repos.addAll(Math.min(1, repos.size()), pom.getDeclaredRepositories());
+		} catch (IOException ex) {
+			if (MavenDependencies.ENABLE_LOGGING) {
+				ex.printStackTrace();
+			}
+		}
+		String parentVersion = model.getParentVersion();
+		if (model.getParentArtifactId() != null && parentVersion != null && parentVersion.indexOf('$') < 0) {
+			Dependency parent = Dependency.valueOf(model.getParentGroupId(), model.getParentArtifactId(), parentVersion,
+					DependencyScope.COMPILE);
+			try {
+				pom = new EffectivePom(model, load(parent, repos, chain), cache.locate(parent, "pom"));
+			} catch (IOException ex) {
+				pom.markIncomplete();
+				if (MavenDependencies.ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		for (Dependency bom : pom.getImports()) {
+			try {
+				pom.importManaged(load(bom, repos, chain), cache.locate(bom, "pom"));
+			} catch (IOException ex) {
+				pom.markIncomplete();
+				if (MavenDependencies.ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		return pom;
+	}
+
+	/**
+	 * Builds the effective model of a pom. If a parent or bom cannot be
+	 * loaded, the pom is built without it and the model is marked as not
+	 * complete.
+	 * 
+	 * @param model
+	 *            The model of the pom
+	 * @param repositories
+	 *            The list of repositories to fetch parents and boms from, in
+	 *            addition to the ones declared in the pom
+	 * @return The effective model
+	 * @since 1.0.0
+	 */
+	EffectivePom build(PomModel model, List<Repository> repositories) {
+		return build(model, repositories, Collections.<String>emptySet());
+	}
+
+	/**
+	 * Creates a new builder
+	 * 
+	 * @param cache
+	 *            The local cache tiers to look for poms in and download them
+	 *            into
+	 * @since 1.0.0
+	 */
+	EffectivePomBuilder(LocalCache cache) {
+		this.cache = cache;
+		loaded = new ConcurrentHashMap<String, FutureTask<EffectivePom>>();
+	}
+}
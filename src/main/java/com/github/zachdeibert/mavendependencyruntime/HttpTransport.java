@@ -0,0 +1,231 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.Map;
+
+/**
+ * The default {@link Transport}, which uses the connection pool that is built
+ * into the JDK so that connections to a repository are kept alive and reused
+ * between requests. The JDK only keeps a few idle connections to each server
+ * by default; this can be raised with the
+ * <code>com.github.zachdeibert.mavendependencyruntime.maxConnections</code>
+ * system property or the <code>MAVEN_DEPENDENCY_RUNTIME_MAX_CONNECTIONS</code>
+ * environment variable, which sets the <code>http.maxConnections</code> system
+ * property if it has not been set already. Since that property is shared with
+ * the rest of the JVM, it is left alone unless it is configured.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class HttpTransport implements Transport {
+	/**
+	 * The default timeout for connecting to a server, in milliseconds
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int DEFAULT_CONNECT_TIMEOUT = Integer
+			.getInteger("com.github.zachdeibert.mavendependencyruntime.connectTimeout", 10000);
+	/**
+	 * The default timeout for reading from a server, in milliseconds
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int DEFAULT_READ_TIMEOUT = Integer
+			.getInteger("com.github.zachdeibert.mavendependencyruntime.readTimeout", 30000);
+	/**
+	 * The number of idle connections to keep alive for each server, or
+	 * <code>null</code> to use the default of the JDK
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String MAX_CONNECTIONS = MavenDependencies.getSetting(
+			"com.github.zachdeibert.mavendependencyruntime.maxConnections", "MAVEN_DEPENDENCY_RUNTIME_MAX_CONNECTIONS",
+			null);
+	/**
+	 * The most bytes that are read from the rest of a response when its stream
+	 * is closed early. If more than this is left, the connection is closed
+	 * instead of being returned to the pool, like the JDK does for its own
+	 * keep-alive streams.
+	 * 
+	 * @since 1.0.0
+	 */
+	static final int MAX_DRAIN = 64 * 1024;
+	/**
+	 * The timeout for connecting to a server, in milliseconds
+	 * 
+	 * @since 1.0.0
+	 */
+	private final int connectTimeout;
+	/**
+	 * The timeout for reading from a server, in milliseconds
+	 * 
+	 * @since 1.0.0
+	 */
+	private final int readTimeout;
+
+	static {
+		if (MAX_CONNECTIONS != null && System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", MAX_CONNECTIONS);
+		}
+	}
+
+	/**
+	 * Reads the rest of a stream (up to {@link HttpTransport#MAX_DRAIN} bytes)
+	 * and closes it, so that the underlying connection can be returned to the
+	 * pool
+	 * 
+	 * @param stream
+	 *            The stream to drain, or <code>null</code>
+	 * @since 1.0.0
+	 */
+	static void drain(InputStream stream) {
+		if (stream != null) {
+			try {
+				try {
+					byte[] buffer = new byte[4096];
+					int left = MAX_DRAIN;
+					int read;
+					while (left > 0 && (read = stream.read(buffer, 0, Math.min(buffer.length, left))) >= 0) {
+						left -= read;
+					}
+				} finally {
+					stream.close();
+				}
+			} catch (IOException ex) {
+			}
+		}
+	}
+
+	/**
+	 * Opens a connection to a url with the configured timeouts
+	 * 
+	 * @param url
+	 *            The url to connect to
+	 * @return The connection
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	protected URLConnection openConnection(URL url) throws IOException {
+		URLConnection conn = url.openConnection();
+		conn.setConnectTimeout(connectTimeout);
+		conn.setReadTimeout(readTimeout);
+		conn.setUseCaches(false);
+		return conn;
+	}
+
+	/**
+	 * Checks the response of a connection and opens the stream to read it
+	 * 
+	 * @param url
+	 *            The url that was requested
+	 * @param conn
+	 *            The connection to the url
+	 * @return The stream containing the response
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static InputStream getInputStream(URL url, URLConnection conn) throws IOException {
+		if (conn instanceof HttpURLConnection) {
+			final HttpURLConnection http = (HttpURLConnection) conn;
+			int code = http.getResponseCode();
+			if (code >= 400) {
+				drain(http.getErrorStream());
+				if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+					throw new FileNotFoundException(url.toString());
+				}
+				throw new IOException(String.format("Server returned HTTP response code %d for URL %s", code, url));
+			}
+			return new FilterInputStream(http.getInputStream()) {
+				@Override
+				public void close() throws IOException {
+					drain(in);
+				}
+			};
+		}
+		return conn.getInputStream();
+	}
+
+	@Override
+	public InputStream openStream(URL url) throws IOException {
+		return getInputStream(url, openConnection(url));
+	}
+
+	@Override
+	public InputStream openStreamIfModified(URL url, Map<String, String> validators) throws IOException {
+		URLConnection conn = openConnection(url);
+		String etag = validators.get(ETAG);
+		String lastModified = validators.get(LAST_MODIFIED);
+		if (etag != null) {
+			conn.setRequestProperty("If-None-Match", etag);
+		}
+		if (lastModified != null) {
+			conn.setRequestProperty("If-Modified-Since", lastModified);
+		}
+		if (conn instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) conn;
+			if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				drain(http.getInputStream());
+				return null;
+			}
+		}
+		InputStream stream = getInputStream(url, conn);
+		validators.clear();
+		etag = conn.getHeaderField(ETAG);
+		lastModified = conn.getHeaderField(LAST_MODIFIED);
+		if (etag != null) {
+			validators.put(ETAG, etag);
+		}
+		if (lastModified != null) {
+			validators.put(LAST_MODIFIED, lastModified);
+		}
+		return stream;
+	}
+
+	@Override
+	public void warmUp(URL url) throws IOException {
+		URLConnection conn = openConnection(url);
+		if (conn instanceof HttpURLConnection) {
+			HttpURLConnection http = (HttpURLConnection) conn;
+			http.setRequestMethod("HEAD");
+			if (http.getResponseCode() >= 400) {
+				drain(http.getErrorStream());
+			} else {
+				drain(http.getInputStream());
+			}
+		}
+	}
+
+	/**
+	 * Creates a new transport
+	 * 
+	 * @param connectTimeout
+	 *            The timeout for connecting to a server, in milliseconds
+	 * @param readTimeout
+	 *            The timeout for reading from a server, in milliseconds
+	 * @since 1.0.0
+	 */
+	public HttpTransport(int connectTimeout, int readTimeout) {
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Creates a new transport with the timeouts configured by the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.connectTimeout</code>
+	 * and <code>com.github.zachdeibert.mavendependencyruntime.readTimeout</code>
+	 * system properties
+	 * 
+	 * @since 1.0.0
+	 */
+	public HttpTransport() {
+		this(DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+}
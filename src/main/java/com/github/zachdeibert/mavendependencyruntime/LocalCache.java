@@ -0,0 +1,191 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ordered tiers of local directories that artifacts are looked up in
+ * before any remote repository. The first tier is writable and is where
+ * downloads are stored; the others (such as <code>~/.m2/repository</code> or a
+ * mirror baked into a container image) are only read from. Looking up an
+ * artifact never changes any tier; an artifact from a read-only tier is only
+ * hard-linked into the writable tier once it is actually used.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class LocalCache {
+	/**
+	 * The directory that downloaded artifacts are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File writableDir;
+	/**
+	 * The read-only directories to look for artifacts in, in the order they
+	 * are checked
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<File> readOnlyDirs;
+	/**
+	 * If artifacts found in a read-only tier should be hard-linked into the
+	 * writable tier instead of being used in place
+	 * 
+	 * @since 1.0.0
+	 */
+	private final boolean link;
+
+	/**
+	 * Gets the directory that downloaded artifacts are stored in
+	 * 
+	 * @return The directory
+	 * @since 1.0.0
+	 */
+	File getWritableDir() {
+		return writableDir;
+	}
+
+	/**
+	 * Gets the read-only directories that artifacts are looked for in
+	 * 
+	 * @return The list of directories, in the order they are checked
+	 * @since 1.0.0
+	 */
+	List<File> getReadOnlyDirs() {
+		return readOnlyDirs;
+	}
+
+	/**
+	 * Finds the file for an artifact in the first tier that has it, without
+	 * changing any of the tiers
+	 * 
+	 * @param dep
+	 *            The dependency to find the file of
+	 * @param ext
+	 *            The file extension (should be either <code>"jar"</code> or
+	 *            <code>"pom"</code>)
+	 * @return The file that was found, or the file in the writable tier that
+	 *         it should be downloaded into if no tier has it
+	 * @since 1.0.0
+	 */
+	File locate(Dependency dep, String ext) {
+		File file = dep.getFile(writableDir, ext);
+		if (file.exists()) {
+			return file;
+		}
+		for (File dir : readOnlyDirs) {
+			File found = dep.getFile(dir, ext);
+			if (found.isFile()) {
+				return found;
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Finds the file for an artifact that is about to be used. If it is only
+	 * found in a read-only tier, it is hard-linked into the writable tier when
+	 * possible, so it stays available if the read-only tier is cleaned up.
+	 * Snapshot versions are never linked, since the link would keep the old
+	 * contents after the read-only tier replaces the file with a new build.
+	 * 
+	 * @param dep
+	 *            The dependency to find the file of
+	 * @param ext
+	 *            The file extension (should be either <code>"jar"</code> or
+	 *            <code>"pom"</code>)
+	 * @return The file to use, or the file in the writable tier that it should
+	 *         be downloaded into if no tier has it
+	 * @since 1.0.0
+	 */
+	File use(Dependency dep, String ext) {
+		File file = dep.getFile(writableDir, ext);
+		File found = locate(dep, ext);
+		if (!link || found.equals(file) || dep.isSnapshot()) {
+			return found;
+		}
+		try {
+			file.getParentFile().mkdirs();
+			Files.createLink(file.toPath(), found.toPath());
+			return file;
+		} catch (FileAlreadyExistsException ex) {
+			return file;
+		} catch (IOException ex) {
+		} catch (UnsupportedOperationException ex) {
+		} catch (SecurityException ex) {
+		}
+		return found;
+	}
+
+	/**
+	 * Gets a list of all of the versions of an artifact that are available in
+	 * any tier
+	 * 
+	 * @param dep
+	 *            The dependency to list the versions of
+	 * @return An array of the versions that are available locally
+	 * @since 1.0.0
+	 */
+	Version[] getInstalledVersions(Dependency dep) {
+		Map<String, Version> versions = new LinkedHashMap<String, Version>();
+		for (Version ver : dep.getInstalledVersions(writableDir)) {
+			versions.put(ver.toString(), ver);
+		}
+		for (File dir : readOnlyDirs) {
+			for (Version ver : dep.getInstalledVersions(dir)) {
+				Dependency installed = Dependency.valueOf(dep.getGroupId(), dep.getArtifactId(), ver.toString(),
+						dep.getScope());
+				if (installed.getFile(dir, "jar").isFile() || installed.getFile(dir, "pom").isFile()) {
+					versions.put(ver.toString(), ver);
+				}
+			}
+		}
+		return versions.values().toArray(new Version[0]);
+	}
+
+	/**
+	 * Parses a list of read-only cache directories
+	 * 
+	 * @param dirs
+	 *            The directories, separated by {@link File#pathSeparator}
+	 * @return The list of directories that exist
+	 * @since 1.0.0
+	 */
+	static List<File> parseDirs(String dirs) {
+		List<File> list = new ArrayList<File>();
+		for (String dir : dirs.split(File.pathSeparator)) {
+			File file = new File(dir.trim());
+			if (!dir.trim().isEmpty() && file.isDirectory()) {
+				list.add(file);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Creates a new set of cache tiers
+	 * 
+	 * @param writableDir
+	 *            The directory that downloaded artifacts are stored in
+	 * @param readOnlyDirs
+	 *            The read-only directories to look for artifacts in, in the
+	 *            order they are checked
+	 * @param link
+	 *            If artifacts found in a read-only tier should be hard-linked
+	 *            into the writable tier instead of being used in place
+	 * @since 1.0.0
+	 */
+	LocalCache(File writableDir, List<File> readOnlyDirs, boolean link) {
+		this.writableDir = writableDir;
+		this.readOnlyDirs = Collections.unmodifiableList(new ArrayList<File>(readOnlyDirs));
+		this.link = link;
+	}
+}
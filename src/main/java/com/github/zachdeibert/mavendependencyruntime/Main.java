@@ -1,8 +1,7 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
-import java.io.InputStream;
 import java.lang.reflect.Method;
-import java.util.Scanner;
+import java.util.jar.Attributes;
 
 /**
  * The main class for when the dependency resolution is being run automatically
@@ -16,14 +15,16 @@ class Main {
 	 * 
 	 * @param mainCls
 	 *            The fully qualified name of the other main class
+	 * @param loader
+	 *            The class loader to load the main class with
 	 * @param args
 	 *            The command line parameters to this application
 	 * @since 1.0.0
 	 * @throws Exception
 	 *             If an error occurs
 	 */
-	private static void execMain(String mainCls, String[] args) throws Exception {
-		Class<?> cls = Class.forName(mainCls);
+	static void execMain(String mainCls, ClassLoader loader, String[] args) throws Exception {
+		Class<?> cls = Class.forName(mainCls, true, loader);
 		Method main = cls.getMethod("main", String[].class);
 		main.setAccessible(true);
 		main.invoke(null, (Object) args);
@@ -39,36 +40,32 @@ class Main {
 	 *             If an error occurs
 	 */
 	public static void main(String[] args) throws Exception {
-		for (String premain : ClassPathScanner
-				.listSystemResources("com/github/zachdeibert/mavendependencyruntime/premains")) {
-			InputStream stream = ClassLoader.getSystemResourceAsStream(
-					"com/github/zachdeibert/mavendependencyruntime/premains/".concat(premain));
-			Scanner scan = new Scanner(stream);
-			while (scan.hasNext()) {
-				String mainCls = scan.nextLine();
-				if (!mainCls.isEmpty()) {
-					execMain(mainCls, args);
-				}
-			}
-			scan.close();
-			stream.close();
+		BootstrapScan bootstrap = BootstrapScan.get();
+		Attributes manifest = bootstrap.getManifest() == null ? new Attributes()
+				: bootstrap.getManifest().getMainAttributes();
+		String mainCls = manifest.getValue("Real-Main-Class");
+		if (mainCls == null) {
+			throw new ClassNotFoundException("Unable to find main class");
 		}
-		InputStream stream = ClassLoader.getSystemResourceAsStream("META-INF/MANIFEST.MF");
-		Scanner scan = new Scanner(stream);
-		String mainCls = null;
-		while (scan.hasNext()) {
-			String key = scan.findInLine("[^:]+");
-			scan.findInLine(": *");
-			mainCls = scan.nextLine();
-			if (key.equals("Real-Main-Class")) {
-				break;
+		ClassLoader loader;
+		if (AppCds.isChild()) {
+			loader = ClassLoader.getSystemClassLoader();
+		} else {
+			loader = MavenDependencies.getClassLoader();
+			if (StagedLaunch.ENABLED) {
+				MavenDependencies.stage(new StagedLaunch(mainCls, manifest.getValue(StagedLaunch.CRITICAL_ATTRIBUTE)));
 			}
 		}
-		scan.close();
-		stream.close();
-		if (mainCls == null) {
-			throw new ClassNotFoundException("Unable to find main class");
+		if (AppCds.ENABLED && !AppCds.isChild() && AppCds.isSupported()) {
+			// The child runs the premains itself, so this only downloads the
+			// dependencies for its classpath like PreMain would
+			MavenDependencies.download();
+			System.exit(new AppCds(MavenDependencies.getClasspath()).launch(args));
 		}
-		execMain(mainCls, args);
+		// The premains are loaded with the same class loader as the main class
+		// so they can see the dependencies and share its classes
+		Thread.currentThread().setContextClassLoader(loader);
+		bootstrap.getPremains().run(args, loader);
+		execMain(mainCls, loader, args);
 	}
 }
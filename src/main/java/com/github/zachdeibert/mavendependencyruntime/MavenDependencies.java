@@ -1,28 +1,22 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Scanner;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * The class that contains all of the methods needed for downloading and
@@ -32,12 +26,74 @@ import org.xml.sax.SAXException;
  * @since 1.0.0
  */
 public abstract class MavenDependencies extends AbstractXmlParser {
+	/**
+	 * The directory that all of the cached data is stored in, which can be
+	 * changed with the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.cacheDir</code>
+	 * system property or the <code>MAVEN_DEPENDENCY_RUNTIME_CACHE_DIR</code>
+	 * environment variable
+	 * 
+	 * @since 1.0.0
+	 */
+	static final File CACHE_DIR = new File(getSetting("com.github.zachdeibert.mavendependencyruntime.cacheDir",
+			"MAVEN_DEPENDENCY_RUNTIME_CACHE_DIR",
+			new File(System.getProperty("user.home"), ".runtime-deps").getPath()));
 	/**
 	 * The directory to download and store artifacts in
 	 * 
 	 * @since 1.0.0
 	 */
-	private static final File BASE_DIR = new File(new File(System.getProperty("user.home"), ".runtime-deps"), "maven");
+	private static final File BASE_DIR = new File(CACHE_DIR, "maven");
+	/**
+	 * The tiers of local directories to look for artifacts in. Besides the
+	 * {@link MavenDependencies#BASE_DIR}, the read-only tiers are configured
+	 * with the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.readOnlyCaches</code>
+	 * system property or the
+	 * <code>MAVEN_DEPENDENCY_RUNTIME_READ_ONLY_CACHES</code> environment
+	 * variable (defaulting to <code>~/.m2/repository</code>), and artifacts
+	 * from them that are used are hard-linked into the writable tier unless
+	 * the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.linkReadOnlyCaches</code>
+	 * system property or the
+	 * <code>MAVEN_DEPENDENCY_RUNTIME_LINK_READ_ONLY_CACHES</code> environment
+	 * variable is <code>false</code>.
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final LocalCache LOCAL_CACHE = new LocalCache(BASE_DIR,
+			LocalCache.parseDirs(getSetting("com.github.zachdeibert.mavendependencyruntime.readOnlyCaches",
+					"MAVEN_DEPENDENCY_RUNTIME_READ_ONLY_CACHES",
+					new File(new File(System.getProperty("user.home"), ".m2"), "repository").getPath())),
+			!"false".equals(getSetting("com.github.zachdeibert.mavendependencyruntime.linkReadOnlyCaches",
+					"MAVEN_DEPENDENCY_RUNTIME_LINK_READ_ONLY_CACHES", "true")));
+	/**
+	 * The directory to store snapshots of resolved classpaths in
+	 * 
+	 * @see ClasspathSnapshot
+	 * @since 1.0.0
+	 */
+	private static final File SNAPSHOT_DIR = new File(CACHE_DIR, "snapshots");
+	/**
+	 * If snapshots of resolved classpaths should be used to skip resolution on
+	 * warm starts
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final boolean ENABLE_SNAPSHOTS = !"false"
+			.equals(System.getProperty("com.github.zachdeibert.mavendependencyruntime.snapshots"));
+	/**
+	 * If the jars of dependencies should only be downloaded once the class
+	 * loader from {@link MavenDependencies#getClassLoader()} first needs a
+	 * class or resource from them, which is enabled with the
+	 * <code>com.github.zachdeibert.mavendependencyruntime.lazy</code> system
+	 * property or the <code>MAVEN_DEPENDENCY_RUNTIME_LAZY</code> environment
+	 * variable
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final boolean LAZY = "true".equals(
+			getSetting("com.github.zachdeibert.mavendependencyruntime.lazy", "MAVEN_DEPENDENCY_RUNTIME_LAZY", "false"));
 	/**
 	 * The scopes to download dependencies for by default
 	 * 
@@ -49,28 +105,80 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 * 
 	 * @since 1.0.0
 	 */
-	private static final boolean ENABLE_LOGGING = "true"
+	static final boolean ENABLE_LOGGING = "true"
 			.equals(System.getProperty("com.github.zachdeibert.mavendependencyruntime.logging"));
 	/**
-	 * A set of all of the dependencies that have already been injected into the
-	 * classpath, so they should not be reinjected (to prevent cyclic
-	 * dependencies from freezing the code in a loop)
+	 * The registry of all of the dependencies that have already been injected
+	 * into the classpath (or are being resolved by another thread), so they
+	 * should not be reinjected (to prevent cyclic dependencies from freezing
+	 * the code in a loop)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ResolutionRegistry REGISTRY = new ResolutionRegistry();
+	/**
+	 * The builder that shares the effective models of parent poms between all
+	 * of the poms that are resolved in this JVM
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final EffectivePomBuilder POMS = new EffectivePomBuilder(LOCAL_CACHE);
+	/**
+	 * The jars that have been injected into the classpath, either by
+	 * themselves or as part of a {@link MergedArchive}
 	 * 
 	 * @since 1.0.0
 	 */
-	private static final Set<Dependency> INJECTED_DEPENDENCIES = new HashSet<Dependency>();
+	private static final Set<File> INJECTED = new LinkedHashSet<File>();
 	/**
-	 * The current indentation for debug logging
+	 * The files that have been added to the classpath, which are the injected
+	 * jars or the archives they were merged into
 	 * 
 	 * @since 1.0.0
 	 */
-	private static String indent = "";
+	private static final Set<File> CLASSPATH = new LinkedHashSet<File>();
+	/**
+	 * The class loader that the application and its dependencies are loaded
+	 * with, or <code>null</code> if it has not been created yet
+	 * 
+	 * @since 1.0.0
+	 */
+	private static DependencyClassLoader classLoader;
+	/**
+	 * The staged launch that the application is started with, or
+	 * <code>null</code> if the application is not started until all of its
+	 * dependencies have been downloaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private static StagedLaunch stagedLaunch;
 
 	static {
-		INJECTED_DEPENDENCIES.add(new Dependency("com.github.zachdeibert", "maven-dependency-runtime", "1.0.0-SNAPSHOT",
+		REGISTRY.provide(Dependency.valueOf("com.github.zachdeibert", "maven-dependency-runtime", "1.0.0-SNAPSHOT",
 				DependencyScope.PROVIDED));
 	}
 
+	/**
+	 * Gets the value of a setting from a system property, or from an
+	 * environment variable if the property is not set
+	 * 
+	 * @param property
+	 *            The name of the system property
+	 * @param env
+	 *            The name of the environment variable
+	 * @param def
+	 *            The default value
+	 * @return The value of the setting
+	 * @since 1.0.0
+	 */
+	static String getSetting(String property, String env, String def) {
+		String value = System.getProperty(property);
+		if (value == null) {
+			value = System.getenv(env);
+		}
+		return value == null ? def : value;
+	}
+
 	/**
 	 * Makes sure that the {@link MavenDependencies#BASE_DIR} exists
 	 * 
@@ -82,32 +190,296 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	}
 
 	/**
-	 * Injects a set of dependencies into the classpath
+	 * Gets the scopes to download dependencies for by default
 	 * 
-	 * @param dependencies
-	 *            The dependencies to inject
+	 * @return The set of scopes
+	 * @see MavenDependencies#DEFAULT_SCOPES
+	 * @since 1.0.0
+	 */
+	static Set<DependencyScope> getDefaultScopes() {
+		return new HashSet<DependencyScope>(Arrays.asList(DEFAULT_SCOPES));
+	}
+
+	/**
+	 * Gets the list of repositories that are used for every pom, in addition to
+	 * the repositories listed in the pom itself
+	 * 
+	 * @return The list of repositories, in the order they should be tried
+	 * @since 1.0.0
+	 */
+	static List<Repository> getDefaultRepositories() {
+		List<Repository> repos = new ArrayList<Repository>();
+		repos.add(new Repository());
+		try {
+			InputStream stream = MavenDependencies.class.getResourceAsStream("overrides.repos");
+			Scanner scan = new Scanner(stream);
+			while (scan.hasNext()) {
+				repos.add(new Repository(scan.nextLine()));
+			}
+			scan.close();
+			stream.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		repos.add(new CommonOverrides());
+		return repos;
+	}
+
+	/**
+	 * Gets the list of repositories to download the dependencies of a pom
+	 * from, and warms up the connections to the ones that the pom declares
+	 * 
+	 * @param declared
+	 *            The repositories that are declared in the pom
+	 * @return The list of repositories, in the order they should be tried
+	 * @since 1.0.0
+	 */
+	static List<Repository> getRepositories(List<Repository> declared) {
+		List<Repository> repos = getDefaultRepositories();
+		repos.addAll(1, declared);
+		DependencyResolver.warmUp(declared);
+		return repos;
+	}
+
+	/**
+	 * Resolves all of the dependencies specified in the pom
+	 * 
+	 * @param pom
+	 *            The model of the pom
+	 * @param scopes
+	 *            The scopes to download for
+	 * @return The mediated dependency graph
 	 * @since 1.0.0
 	 * @throws IOException
 	 *             If an I/O error has occurred
 	 */
-	public static void injectClasspath(Set<Dependency> dependencies) throws IOException {
+	static DependencyGraph resolve(PomModel pom, DependencyScope... scopes) throws IOException {
+		Set<DependencyScope> scopeSet = new HashSet<DependencyScope>();
+		scopeSet.addAll(Arrays.asList(scopes));
+		EffectivePom effective = POMS.build(pom, getDefaultRepositories());
+		DependencyGraph graph = resolve(getRepositories(effective.getDeclaredRepositories()),
+				effective.getDependencies(scopeSet));
+		if (!effective.isComplete()) {
+			graph.markIncomplete();
+		}
+		return graph;
+	}
+
+	/**
+	 * Gets the total time that threads in this JVM have spent waiting for
+	 * another thread or process to finish downloading an artifact into the
+	 * shared cache
+	 * 
+	 * @return The time in nanoseconds
+	 * @since 1.0.0
+	 */
+	public static long getLockWaitTime() {
+		return ArtifactLocks.getWaitTime();
+	}
+
+	/**
+	 * Gets the number of times that a thread in this JVM had to wait for
+	 * another thread or process to finish downloading an artifact into the
+	 * shared cache
+	 * 
+	 * @return The number of contended lock requests
+	 * @since 1.0.0
+	 */
+	public static long getLockContentions() {
+		return ArtifactLocks.getContentions();
+	}
+
+	/**
+	 * Gets the jars and directories on the classpath of this JVM
+	 * 
+	 * @return The list of files
+	 * @since 1.0.0
+	 */
+	private static List<File> getSystemClasspath() {
+		List<File> files = new ArrayList<File>();
+		for (String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+			if (!path.isEmpty()) {
+				files.add(new File(path));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Gets the full classpath of the application, which is the classpath of
+	 * this JVM followed by all of the dependencies that have been injected.
+	 * Any jars that were left to be downloaded lazily are downloaded first.
+	 * 
+	 * @return The list of files
+	 * @since 1.0.0
+	 */
+	static List<File> getClasspath() {
+		DependencyClassLoader loader;
+		synchronized (MavenDependencies.class) {
+			loader = classLoader;
+		}
+		if (loader != null) {
+			loader.downloadAll();
+		}
+		synchronized (MavenDependencies.class) {
+			List<File> files = getSystemClasspath();
+			files.addAll(CLASSPATH);
+			return files;
+		}
+	}
+
+	/**
+	 * Gets the class loader to leave the downloads of jars to
+	 * 
+	 * @return The class loader, or <code>null</code> if neither lazy mode nor
+	 *         a staged launch is enabled or the class loader has not been
+	 *         created yet
+	 * @see MavenDependencies#LAZY
+	 * @since 1.0.0
+	 */
+	private static synchronized DependencyClassLoader getLazyLoader() {
+		return LAZY || stagedLaunch != null ? classLoader : null;
+	}
+
+	/**
+	 * Gets the staged launch that the application is started with
+	 * 
+	 * @return The staged launch, or <code>null</code> if there is none
+	 * @since 1.0.0
+	 */
+	private static synchronized StagedLaunch getStagedLaunch() {
+		return stagedLaunch;
+	}
+
+	/**
+	 * Starts the application with a staged launch, so that only the
+	 * dependencies it needs right away are downloaded before it starts and
+	 * the rest are downloaded in the background
+	 * 
+	 * @param launch
+	 *            The staged launch
+	 * @since 1.0.0
+	 */
+	static void stage(StagedLaunch launch) {
+		DependencyClassLoader loader = (DependencyClassLoader) getClassLoader();
+		synchronized (MavenDependencies.class) {
+			stagedLaunch = launch;
+		}
+		launch.watch(loader);
+	}
+
+	/**
+	 * Gets the class loader that the application and its dependencies are
+	 * loaded with. It is created the first time this is called, with the jars
+	 * and directories on the system classpath and all of the dependencies that
+	 * have been injected so far.
+	 * 
+	 * @return The class loader
+	 * @since 1.0.0
+	 */
+	public static synchronized ClassLoader getClassLoader() {
+		if (classLoader == null) {
+			classLoader = new DependencyClassLoader(MavenDependencies.class.getClassLoader());
+			for (File file : getSystemClasspath()) {
+				try {
+					classLoader.addFile(file);
+				} catch (IOException ex) {
+					if (ENABLE_LOGGING) {
+						ex.printStackTrace();
+					}
+				}
+			}
+			for (File file : CLASSPATH) {
+				try {
+					classLoader.addFile(file);
+				} catch (IOException ex) {
+					if (ENABLE_LOGGING) {
+						ex.printStackTrace();
+					}
+				}
+			}
+		}
+		return classLoader;
+	}
+
+	/**
+	 * Adds jars to the system class loader, for applications that call this
+	 * library from their own main class instead of being launched by it. This
+	 * only works on runtimes where the system class loader is a
+	 * {@link URLClassLoader}, and is skipped on any other runtime.
+	 * 
+	 * @param files
+	 *            The jars to add
+	 * @since 1.0.0
+	 */
+	private static void injectSystemClasspath(List<File> files) {
 		ClassLoader genericLoader = ClassLoader.getSystemClassLoader();
 		if (genericLoader instanceof URLClassLoader) {
 			try {
-				URLClassLoader urlLoader = (URLClassLoader) genericLoader;
 				Method addUrl = URLClassLoader.class.getDeclaredMethod("addURL", URL.class);
 				addUrl.setAccessible(true);
-				for (Dependency dep : dependencies) {
-					File file = dep.getFile(BASE_DIR, "jar");
-					if (file.exists()) {
-						addUrl.invoke(urlLoader, file.toURI().toURL());
-					}
+				for (File file : files) {
+					addUrl.invoke(genericLoader, file.toURI().toURL());
 				}
 			} catch (ReflectiveOperationException ex) {
-				throw new IOException("Unable to inject the classpath", ex);
+				if (ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			} catch (IOException ex) {
+				if (ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			} catch (RuntimeException ex) {
+				if (ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Injects a set of dependencies into the classpath of the class loader
+	 * from {@link MavenDependencies#getClassLoader()}. If that class loader
+	 * has not been created yet, they are also added to the system class loader
+	 * where the runtime allows it. If {@link MergedArchive#ENABLED} is set, the
+	 * jars are merged into one archive before they are injected.
+	 * 
+	 * @param dependencies
+	 *            The dependencies to inject
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	public static void injectClasspath(Set<Dependency> dependencies) throws IOException {
+		List<File> files = new ArrayList<File>();
+		synchronized (MavenDependencies.class) {
+			for (Dependency dep : dependencies) {
+				File file = LOCAL_CACHE.use(dep, "jar");
+				if (file.exists() && INJECTED.add(file)) {
+					files.add(file);
+				}
 			}
+		}
+		if (MergedArchive.ENABLED && files.size() > 1) {
+			try {
+				files = MergedArchive.merge(files);
+			} catch (IOException ex) {
+				if (ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		DependencyClassLoader loader;
+		synchronized (MavenDependencies.class) {
+			CLASSPATH.addAll(files);
+			loader = classLoader;
+		}
+		if (loader == null) {
+			injectSystemClasspath(files);
 		} else {
-			throw new IOException("Unable to inject the classpath");
+			for (File file : files) {
+				loader.addFile(file);
+			}
 		}
 	}
 
@@ -125,107 +497,51 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 *             If an I/O error has occurred
 	 */
 	public static Set<Dependency> download(List<Repository> repositories, Dependency dependency) throws IOException {
-		if (INJECTED_DEPENDENCIES.contains(dependency)) {
-			return new HashSet<Dependency>();
-		}
-		if (ENABLE_LOGGING) {
-			System.out.printf("%sResolving dependency %s\n", indent, dependency);
-			indent = indent.concat(" ");
-		}
-		try {
-			if (dependency.getVersion() == null) {
-				IOException e = null;
-				for (Repository repo : repositories) {
-					try {
-						repo.setVersion(dependency);
-						e = null;
-						break;
-					} catch (IOException ex) {
-						if (e == null) {
-							e = new IOException(String.format("Unable to find latest version of %s", dependency));
-						}
-						e.addSuppressed(ex);
-					}
-				}
-				if (e != null) {
-					Version max = null;
-					for (Version ver : dependency.getInstalledVersions(BASE_DIR)) {
-						if (max == null || ver.compareTo(max) > 0) {
-							max = ver;
-						}
-					}
-					if (max == null) {
-						throw e;
-					} else {
-						dependency.setVersion(max.toString());
-					}
-				}
-			}
-			File pom = dependency.getFile(BASE_DIR, "pom");
-			File jar = dependency.getFile(BASE_DIR, "jar");
-			Set<Dependency> downloaded = new HashSet<Dependency>();
-			downloaded.add(dependency);
-			if (jar.exists()) {
-				INJECTED_DEPENDENCIES.add(dependency);
-				if (pom.exists()) {
-					downloaded.addAll(download(pom.toURI().toURL()));
-				}
-				return downloaded;
-			}
-			pom.getParentFile().mkdirs();
-			IOException e = null;
-			for (Repository repo : repositories) {
-				try {
-					repo.download(dependency, pom);
-					try {
-						repo.download(dependency, jar);
-					} catch (IOException exception) {
-						try {
-							DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-							DocumentBuilder builder = factory.newDocumentBuilder();
-							Document xml = builder.parse(pom);
-							try {
-								if (find("packaging", xml.getDocumentElement(), "pom").equals("jar")) {
-									throw exception;
-								}
-							} catch (ParseException ex) {
-								ex.addSuppressed(exception);
-								throw new IOException("Unable to find packaging information in pom.xml", ex);
-							}
-						} catch (ParserConfigurationException ex) {
-							ex.addSuppressed(exception);
-							throw new IOException("Unable to load pom.xml parser", ex);
-						} catch (SAXException ex) {
-							ex.addSuppressed(exception);
-							throw new IOException("Unable to parse pom.xml", ex);
-						} catch (IOException ex) {
-							if (ex != exception) {
-								ex.addSuppressed(exception);
-							}
-							throw ex;
-						}
-					}
-					if (pom.exists()) {
-						downloaded.addAll(download(pom.toURI().toURL()));
-					}
-					e = null;
-					break;
-				} catch (IOException ex) {
-					if (e == null) {
-						e = new IOException(String.format("Unable to find download for %s", dependency));
-					}
-					e.addSuppressed(ex);
-				}
-			}
-			if (e != null) {
-				throw e;
-			}
-			return downloaded;
-		} finally {
-			if (ENABLE_LOGGING) {
-				indent = indent.substring(1);
-			}
-		}
+		return new DependencyResolver(REGISTRY, LOCAL_CACHE, POMS, null, null)
+				.resolve(repositories, Collections.singletonList(dependency)).getDependencies();
+	}
+
+	/**
+	 * Resolves a list of dependencies along with all of their dependencies,
+	 * mediating the versions of artifacts that are requested more than once,
+	 * then downloads the winning versions into the
+	 * {@link MavenDependencies#BASE_DIR} and injects them into the classpath.
+	 * In lazy mode or a staged launch, the jars that are not in the cache yet
+	 * are injected when they are first needed instead.
+	 * 
+	 * @param repositories
+	 *            The list of repositories to try to download from
+	 * @param dependencies
+	 *            The list of dependencies to download
+	 * @return The mediated dependency graph
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	public static DependencyGraph resolve(List<Repository> repositories, List<Dependency> dependencies)
+			throws IOException {
+		createBaseDir();
+		DependencyGraph graph = new DependencyResolver(REGISTRY, LOCAL_CACHE, POMS, getLazyLoader(),
+				getStagedLaunch()).resolve(repositories, dependencies);
+		injectClasspath(graph.getDependencies());
+		return graph;
+	}
+
+	/**
+	 * Resolves all of the dependencies specified in the pom, then downloads
+	 * them and injects them into the classpath
+	 * 
+	 * @param pom
+	 *            The stream containing the pom file
+	 * @param scopes
+	 *            The scopes to download for
+	 * @return The mediated dependency graph
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	public static DependencyGraph resolve(InputStream pom, DependencyScope... scopes) throws IOException {
+		return resolve(PomModel.parse(pom), scopes);
 	}
 
 	/**
@@ -243,13 +559,7 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 */
 	public static Set<Dependency> download(List<Repository> repositories, List<Dependency> dependencies)
 			throws IOException {
-		createBaseDir();
-		Set<Dependency> downloaded = new HashSet<Dependency>();
-		for (Dependency dep : dependencies) {
-			downloaded.addAll(download(repositories, dep));
-		}
-		injectClasspath(downloaded);
-		return downloaded;
+		return resolve(repositories, dependencies).getDependencies();
 	}
 
 	/**
@@ -265,51 +575,7 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 *             If an I/O error has occurred
 	 */
 	public static Set<Dependency> download(Document pom, DependencyScope... scopes) throws IOException {
-		List<Repository> repos = new ArrayList<Repository>();
-		List<Dependency> deps = new ArrayList<Dependency>();
-		Set<DependencyScope> scopeSet = new HashSet<DependencyScope>();
-		scopeSet.addAll(Arrays.asList(scopes));
-		NodeList nodes = pom.getDocumentElement().getChildNodes();
-		repos.add(new Repository());
-		try {
-			for (int i = 0; i < nodes.getLength(); ++i) {
-				Node node = nodes.item(i);
-				if (node.getNodeName() == "repositories") {
-					nodes = ((Element) node).getElementsByTagName("repository");
-					for (i = 0; i < nodes.getLength(); ++i) {
-						Element e = (Element) nodes.item(i);
-						repos.add(new Repository(e));
-					}
-					break;
-				}
-			}
-		} catch (ParseException ex) {
-			throw new IOException("Unable to parse repositories", ex);
-		}
-		try {
-			InputStream stream = MavenDependencies.class.getResourceAsStream("overrides.repos");
-			Scanner scan = new Scanner(stream);
-			while (scan.hasNext()) {
-				repos.add(new Repository(scan.nextLine()));
-			}
-			scan.close();
-			stream.close();
-		} catch (IOException ex) {
-			ex.printStackTrace();
-		}
-		repos.add(new CommonOverrides());
-		nodes = pom.getElementsByTagName("dependency");
-		try {
-			for (int i = 0; i < nodes.getLength(); ++i) {
-				Dependency dep = new Dependency((Element) nodes.item(i));
-				if (scopeSet.contains(dep.getScope())) {
-					deps.add(dep);
-				}
-			}
-		} catch (ParseException ex) {
-			throw new IOException("Unable to parse dependencies", ex);
-		}
-		return download(repos, deps);
+		return resolve(PomModel.parse(pom), scopes).getDependencies();
 	}
 
 	/**
@@ -341,16 +607,7 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 *             If an I/O error has occurred
 	 */
 	public static Set<Dependency> download(InputStream pom, DependencyScope... scopes) throws IOException {
-		try {
-			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder builder = factory.newDocumentBuilder();
-			Document xml = builder.parse(pom);
-			return download(xml, scopes);
-		} catch (ParserConfigurationException ex) {
-			throw new IOException("Unable to load pom.xml parser", ex);
-		} catch (SAXException ex) {
-			throw new IOException("Unable to parse pom.xml", ex);
-		}
+		return resolve(pom, scopes).getDependencies();
 	}
 
 	/**
@@ -383,9 +640,58 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 */
 	public static Set<Dependency> download(URL pomPath, DependencyScope... scopes) throws IOException {
 		InputStream pom = pomPath.openStream();
-		Set<Dependency> downloaded = download(pom, scopes);
-		pom.close();
-		return downloaded;
+		byte[] contents;
+		try {
+			contents = CacheFiles.readFully(pom);
+		} finally {
+			pom.close();
+		}
+		return downloadPom(contents, scopes);
+	}
+
+	/**
+	 * Downloads all of the dependencies specified in the pom, using the
+	 * snapshot of its resolved classpath if there is a valid one. A snapshot
+	 * is only written if none of the versions in the graph had to be looked
+	 * up in the repositories, so that new releases are still picked up
+	 * according to the update policies.
+	 * 
+	 * @param contents
+	 *            The contents of the pom
+	 * @param scopes
+	 *            The scopes to download for
+	 * @return The set of all dependencies that were downloaded
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static Set<Dependency> downloadPom(byte[] contents, DependencyScope... scopes) throws IOException {
+		if (!ENABLE_SNAPSHOTS) {
+			DependencyResolver.warmUp(getDefaultRepositories());
+			return download(new ByteArrayInputStream(contents), scopes);
+		}
+		ClasspathSnapshot snapshot = new ClasspathSnapshot(SNAPSHOT_DIR,
+				ClasspathSnapshot.computeKey(contents, scopes));
+		Set<Dependency> downloaded = snapshot.read(LOCAL_CACHE);
+		if (downloaded != null) {
+			for (Dependency dep : downloaded) {
+				REGISTRY.provide(dep);
+			}
+			injectClasspath(downloaded);
+			return downloaded;
+		}
+		DependencyResolver.warmUp(getDefaultRepositories());
+		DependencyGraph graph = resolve(new ByteArrayInputStream(contents), scopes);
+		if (graph.getDeferred().isEmpty() && graph.isComplete() && !graph.isDynamic()) {
+			try {
+				snapshot.write(graph.getDependencies(), LOCAL_CACHE);
+			} catch (IOException ex) {
+				if (ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		return graph.getDependencies();
 	}
 
 	/**
@@ -475,7 +781,7 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 
 	/**
 	 * Downloads all of the dependencies specified in all poms contained inside
-	 * the manifest in the current classpath
+	 * the jar this library was launched from
 	 * 
 	 * @param scopes
 	 *            The scopes to download for
@@ -486,17 +792,15 @@ public abstract class MavenDependencies extends AbstractXmlParser {
 	 */
 	public static Set<Dependency> download(DependencyScope... scopes) throws IOException {
 		Set<Dependency> deps = new HashSet<Dependency>();
-		for (String group : ClassPathScanner.listSystemResources("META-INF/maven")) {
-			for (String artifact : ClassPathScanner.listSystemResources("META-INF/maven/".concat(group))) {
-				deps.addAll(download(group, artifact, scopes));
-			}
+		for (byte[] pom : BootstrapScan.get().getPoms().values()) {
+			deps.addAll(downloadPom(pom, scopes));
 		}
 		return deps;
 	}
 
 	/**
 	 * Downloads all of the dependencies specified in all poms contained inside
-	 * the manifest in the current classpath for the default scopes
+	 * the jar this library was launched from for the default scopes
 	 * 
 	 * @return The set of all dependencies that were downloaded
 	 * @since 1.0.0
@@ -0,0 +1,467 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Merges the jars of the resolved dependencies into a single uncompressed
+ * archive in the cache, so that only one file has to be opened and only one
+ * central directory has to be read when the classpath is injected. The
+ * archive is keyed by the jars that are merged into it, so it is only rebuilt
+ * when the resolved set changes. The service files of all of the jars are
+ * merged, and the attributes that describe the packages of each jar are kept
+ * as per-package sections of the manifest. A jar that is signed or that has a
+ * class or resource that one of the jars before it also has is left out of the
+ * archive and injected by itself after it, so that its signature still applies
+ * and the copy that comes first on the classpath is still the one that is
+ * found. This is enabled with the
+ * <code>com.github.zachdeibert.mavendependencyruntime.mergeClasspath</code>
+ * system property or the <code>MAVEN_DEPENDENCY_RUNTIME_MERGE_CLASSPATH</code>
+ * environment variable.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class MergedArchive {
+	/**
+	 * If the jars of the dependencies should be merged before they are
+	 * injected
+	 * 
+	 * @since 1.0.0
+	 */
+	static final boolean ENABLED = "true".equals(
+			MavenDependencies.getSetting("com.github.zachdeibert.mavendependencyruntime.mergeClasspath",
+					"MAVEN_DEPENDENCY_RUNTIME_MERGE_CLASSPATH", "false"));
+	/**
+	 * The version of the archive layout, which is part of the key so that
+	 * archives are rebuilt when it changes
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int FORMAT_VERSION = 2;
+	/**
+	 * The directory to store the archives in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "merged");
+	/**
+	 * The directory that service files are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String SERVICES = "META-INF/services/";
+	/**
+	 * The manifest attribute of the archive that lists the jars that were left
+	 * out of it
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Attributes.Name UNMERGED = new Attributes.Name("Unmerged-Class-Path");
+	/**
+	 * The manifest attribute that marks a multi-release jar
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Attributes.Name MULTI_RELEASE = new Attributes.Name("Multi-Release");
+	/**
+	 * The manifest attributes that describe the packages in a jar
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Attributes.Name[] PACKAGE_ATTRIBUTES = { Attributes.Name.SPECIFICATION_TITLE,
+			Attributes.Name.SPECIFICATION_VERSION, Attributes.Name.SPECIFICATION_VENDOR,
+			Attributes.Name.IMPLEMENTATION_TITLE, Attributes.Name.IMPLEMENTATION_VERSION,
+			Attributes.Name.IMPLEMENTATION_VENDOR, Attributes.Name.SEALED };
+
+	/**
+	 * Computes the key that the archive for a list of jars is stored under,
+	 * which changes whenever any of the jars changes
+	 * 
+	 * @param jars
+	 *            The jars, in the order they are merged
+	 * @return The key
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static String computeKey(List<File> jars) throws IOException {
+		MessageDigest digest = CacheFiles.createDigest();
+		digest.update(Integer.toString(FORMAT_VERSION).getBytes(CacheFiles.UTF8));
+		for (File jar : jars) {
+			digest.update(jar.getAbsolutePath().getBytes(CacheFiles.UTF8));
+			digest.update(Long.toString(jar.length()).getBytes(CacheFiles.UTF8));
+			digest.update(Long.toString(jar.lastModified()).getBytes(CacheFiles.UTF8));
+		}
+		return CacheFiles.toHex(digest.digest());
+	}
+
+	/**
+	 * Checks if an entry is only metadata of the jar it is in, so it is not
+	 * copied into the archive
+	 * 
+	 * @param name
+	 *            The name of the entry
+	 * @return If the entry is left out
+	 * @since 1.0.0
+	 */
+	private static boolean isJarMetadata(String name) {
+		if (!name.startsWith("META-INF/") || name.indexOf('/', 9) >= 0) {
+			return false;
+		}
+		String upper = name.toUpperCase(Locale.ROOT);
+		return upper.equals("META-INF/MANIFEST.MF") || upper.equals("META-INF/INDEX.LIST") || upper.endsWith(".SF")
+				|| upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC")
+				|| upper.startsWith("META-INF/SIG-");
+	}
+
+	/**
+	 * Checks if there is no harm in only keeping the first copy of an entry
+	 * that is in more than one jar. Classes are not, since the jar that comes
+	 * first on the classpath has to be the one that defines them, except for
+	 * module descriptors, which are never loaded from the classpath.
+	 * 
+	 * @param name
+	 *            The name of the entry
+	 * @return If the first copy is enough
+	 * @since 1.0.0
+	 */
+	private static boolean isReplaceable(String name) {
+		if (name.endsWith("/") || name.equals("module-info.class")
+				|| (name.startsWith("META-INF/versions/") && name.endsWith("/module-info.class"))) {
+			return true;
+		}
+		String base = name.substring(name.lastIndexOf('/') + 1).toUpperCase(Locale.ROOT);
+		return base.startsWith("LICENSE") || base.startsWith("NOTICE") || base.startsWith("DEPENDENCIES")
+				|| base.startsWith("README");
+	}
+
+	/**
+	 * Checks if a jar is signed
+	 * 
+	 * @param jar
+	 *            The jar
+	 * @return If it has a signature file
+	 * @since 1.0.0
+	 */
+	private static boolean isSigned(JarFile jar) {
+		for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+			String name = entries.nextElement().getName().toUpperCase(Locale.ROOT);
+			if (name.startsWith("META-INF/") && name.endsWith(".SF") && name.indexOf('/', 9) < 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the lines of a service file to the providers of the service
+	 * 
+	 * @param stream
+	 *            The stream containing the service file
+	 * @param providers
+	 *            The providers of the service
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static void readService(InputStream stream, Set<String> providers) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "UTF-8"));
+		try {
+			for (String line; (line = reader.readLine()) != null;) {
+				int comment = line.indexOf('#');
+				if (comment >= 0) {
+					line = line.substring(0, comment);
+				}
+				line = line.trim();
+				if (!line.isEmpty()) {
+					providers.add(line);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes an uncompressed entry to the archive
+	 * 
+	 * @param out
+	 *            The stream of the archive
+	 * @param name
+	 *            The name of the entry
+	 * @param data
+	 *            The contents of the entry
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static void writeEntry(JarOutputStream out, String name, byte[] data) throws IOException {
+		ZipEntry entry = new ZipEntry(name);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(data.length);
+		entry.setCompressedSize(data.length);
+		entry.setCrc(crc.getValue());
+		out.putNextEntry(entry);
+		out.write(data);
+		out.closeEntry();
+	}
+
+	/**
+	 * Builds the manifest of the archive, with a section for each package
+	 * that has attributes in the jar it came from
+	 * 
+	 * @param jars
+	 *            The jars that are merged
+	 * @param unmerged
+	 *            The jars that are left out of the archive
+	 * @return The manifest
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static Manifest buildManifest(List<JarFile> jars, List<File> unmerged) throws IOException {
+		Manifest manifest = new Manifest();
+		Attributes main = manifest.getMainAttributes();
+		main.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		StringBuilder str = new StringBuilder();
+		for (File file : unmerged) {
+			if (str.length() > 0) {
+				str.append(' ');
+			}
+			str.append(file.getAbsoluteFile().toURI());
+		}
+		main.put(UNMERGED, str.toString());
+		Map<String, Attributes> sections = manifest.getEntries();
+		for (JarFile jar : jars) {
+			Manifest original = jar.getManifest();
+			if (original == null) {
+				continue;
+			}
+			if ("true".equalsIgnoreCase(original.getMainAttributes().getValue(MULTI_RELEASE))) {
+				main.put(MULTI_RELEASE, "true");
+			}
+			Attributes defaults = new Attributes();
+			for (Attributes.Name name : PACKAGE_ATTRIBUTES) {
+				String value = original.getMainAttributes().getValue(name);
+				if (value != null) {
+					defaults.put(name, value);
+				}
+			}
+			for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+				String name = entries.nextElement().getName();
+				int slash = name.lastIndexOf('/');
+				if (!name.endsWith(".class") || slash < 0 || name.startsWith("META-INF/")) {
+					continue;
+				}
+				String dir = name.substring(0, slash + 1);
+				if (!sections.containsKey(dir)) {
+					Attributes attrs = new Attributes(defaults);
+					Attributes own = original.getAttributes(dir);
+					if (own != null) {
+						attrs.putAll(own);
+					}
+					if (!attrs.isEmpty()) {
+						sections.put(dir, attrs);
+					}
+				}
+			}
+		}
+		return manifest;
+	}
+
+	/**
+	 * Writes the archive
+	 * 
+	 * @param jars
+	 *            The jars to merge, in classpath order
+	 * @param unmerged
+	 *            The jars that are left out of the archive
+	 * @param archive
+	 *            The file to write the archive to
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static void write(List<JarFile> jars, List<File> unmerged, File archive) throws IOException {
+		File tmp = CacheFiles.createTemp(archive);
+		try {
+			JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+				buildManifest(jars, unmerged).write(manifest);
+				writeEntry(out, "META-INF/", new byte[0]);
+				writeEntry(out, JarFile.MANIFEST_NAME, manifest.toByteArray());
+				Set<String> written = new HashSet<String>();
+				written.add("META-INF/");
+				Map<String, Set<String>> services = new LinkedHashMap<String, Set<String>>();
+				for (JarFile jar : jars) {
+					for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+						JarEntry entry = entries.nextElement();
+						String name = entry.getName();
+						if (isJarMetadata(name)) {
+							continue;
+						}
+						if (name.startsWith(SERVICES) && !entry.isDirectory()
+								&& name.indexOf('/', SERVICES.length()) < 0) {
+							Set<String> providers = services.get(name);
+							if (providers == null) {
+								providers = new LinkedHashSet<String>();
+								services.put(name, providers);
+							}
+							readService(jar.getInputStream(entry), providers);
+						} else if (written.add(name)) {
+							InputStream stream = jar.getInputStream(entry);
+							try {
+								writeEntry(out, name, CacheFiles.readFully(stream));
+							} finally {
+								stream.close();
+							}
+						}
+					}
+				}
+				for (Map.Entry<String, Set<String>> service : services.entrySet()) {
+					StringBuilder str = new StringBuilder();
+					for (String provider : service.getValue()) {
+						str.append(provider).append('\n');
+					}
+					writeEntry(out, service.getKey(), str.toString().getBytes(Charset.forName("UTF-8")));
+				}
+			} finally {
+				out.close();
+			}
+			CacheFiles.moveIntoPlace(tmp, archive);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Reads the list of jars that were left out of an archive
+	 * 
+	 * @param archive
+	 *            The archive
+	 * @return The list of jars
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the archive could not be read
+	 */
+	private static List<File> readUnmerged(File archive) throws IOException {
+		JarFile jar = new JarFile(archive);
+		try {
+			Manifest manifest = jar.getManifest();
+			String value = manifest == null ? null : manifest.getMainAttributes().getValue(UNMERGED);
+			if (value == null) {
+				throw new IOException(String.format("%s is not a merged archive", archive));
+			}
+			List<File> files = new ArrayList<File>();
+			for (String uri : value.split(" ")) {
+				if (!uri.isEmpty()) {
+					files.add(new File(URI.create(uri)));
+				}
+			}
+			return files;
+		} finally {
+			jar.close();
+		}
+	}
+
+	/**
+	 * Merges a list of jars into an archive, building the archive if there is
+	 * no archive for the jars yet
+	 * 
+	 * @param jars
+	 *            The jars to merge, in the order they are injected
+	 * @return The files to inject instead of the jars, which are the archive
+	 *         followed by the jars that were left out of it
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the archive could not be built
+	 */
+	static List<File> merge(Collection<File> jars) throws IOException {
+		List<File> ordered = new ArrayList<File>(jars);
+		File archive = new File(DIR, computeKey(ordered).concat(".jar"));
+		List<File> unmerged;
+		if (archive.isFile()) {
+			unmerged = readUnmerged(archive);
+		} else {
+			unmerged = new ArrayList<File>();
+			List<JarFile> merged = new ArrayList<JarFile>();
+			try {
+				// The entries of the jars that are left out are recorded too, so a
+				// later jar that has one of them is left out after them instead
+				// of being found first in the archive
+				Map<String, File> resources = new HashMap<String, File>();
+				for (File file : ordered) {
+					JarFile jar = new JarFile(file);
+					List<String> names = new ArrayList<String>();
+					boolean conflict = isSigned(jar);
+					for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements();) {
+						String name = entries.nextElement().getName();
+						if (!isJarMetadata(name) && !isReplaceable(name) && !name.startsWith(SERVICES)) {
+							conflict |= resources.containsKey(name);
+							names.add(name);
+						}
+					}
+					for (String name : names) {
+						if (!resources.containsKey(name)) {
+							resources.put(name, file);
+						}
+					}
+					if (conflict) {
+						jar.close();
+						unmerged.add(file);
+					} else {
+						merged.add(jar);
+					}
+				}
+				write(merged, unmerged, archive);
+			} finally {
+				for (JarFile jar : merged) {
+					jar.close();
+				}
+			}
+		}
+		List<File> files = new ArrayList<File>();
+		files.add(archive);
+		files.addAll(unmerged);
+		return files;
+	}
+
+	/**
+	 * This class should never be instantiated
+	 * 
+	 * @since 1.0.0
+	 */
+	private MergedArchive() {
+	}
+}
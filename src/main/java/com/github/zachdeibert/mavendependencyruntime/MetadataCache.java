@@ -0,0 +1,166 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A cache of the <code>maven-metadata.xml</code> files of each repository,
+ * which are only revalidated as often as the update policy of the repository
+ * allows
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class MetadataCache {
+	/**
+	 * The directory the metadata for all repositories is stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "metadata");
+	/**
+	 * The key in the status file for when the metadata was last checked
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String LAST_CHECKED = "lastChecked";
+
+	/**
+	 * Loads the status file of a cached metadata file
+	 * 
+	 * @param file
+	 *            The status file
+	 * @return The status, which is empty if the file does not exist
+	 * @since 1.0.0
+	 */
+	private static Properties loadStatus(File file) {
+		Properties status = new Properties();
+		try {
+			InputStream stream = new FileInputStream(file);
+			try {
+				status.load(stream);
+			} finally {
+				stream.close();
+			}
+		} catch (IOException ex) {
+		} catch (IllegalArgumentException ex) {
+		}
+		return status;
+	}
+
+	/**
+	 * Saves the status file of a cached metadata file
+	 * 
+	 * @param file
+	 *            The status file
+	 * @param status
+	 *            The status to save
+	 * @since 1.0.0
+	 */
+	private static void saveStatus(File file, Properties status) {
+		try {
+			File tmp = CacheFiles.createTemp(file);
+			try {
+				OutputStream stream = new FileOutputStream(tmp);
+				try {
+					status.store(stream, null);
+				} finally {
+					stream.close();
+				}
+				CacheFiles.moveIntoPlace(tmp, file);
+			} finally {
+				tmp.delete();
+			}
+		} catch (IOException ex) {
+		}
+	}
+
+	/**
+	 * Gets a metadata file from a repository, using the cached copy if it was
+	 * checked recently enough and revalidating it with a conditional request
+	 * otherwise
+	 * 
+	 * @param repo
+	 *            The repository to get the metadata from
+	 * @param path
+	 *            The path of the metadata file relative to the root of the
+	 *            repository
+	 * @param policy
+	 *            The update policy of the repository
+	 * @return The up to date metadata file in the cache
+	 * @since 1.0.0
+	 * @throws FileNotFoundException
+	 *             If the repository does not have the metadata file
+	 * @throws IOException
+	 *             If an I/O error has occurred and there is no cached copy
+	 */
+	static File fetch(Repository repo, String path, UpdatePolicy policy) throws IOException {
+		File dir = new File(DIR, CacheFiles.hash(repo.getUrl()));
+		File file = new File(dir, path);
+		File statusFile = new File(dir, path.concat(".status"));
+		Properties status = loadStatus(statusFile);
+		long now = System.currentTimeMillis();
+		boolean cached = file.exists();
+		if (cached) {
+			long lastChecked;
+			try {
+				lastChecked = Long.parseLong(status.getProperty(LAST_CHECKED, "0"));
+			} catch (NumberFormatException ex) {
+				lastChecked = 0;
+			}
+			if (!policy.isUpdateRequired(lastChecked, now)) {
+				return file;
+			}
+		}
+		Map<String, String> validators = new HashMap<String, String>();
+		if (cached) {
+			for (String header : new String[] { Transport.ETAG, Transport.LAST_MODIFIED }) {
+				String value = status.getProperty(header);
+				if (value != null) {
+					validators.put(header, value);
+				}
+			}
+		}
+		InputStream ins;
+		try {
+			ins = repo.openStream(path, validators);
+		} catch (FileNotFoundException ex) {
+			throw ex;
+		} catch (IOException ex) {
+			if (cached) {
+				return file;
+			}
+			throw ex;
+		}
+		if (ins != null) {
+			try {
+				CacheFiles.save(ins, file);
+			} finally {
+				ins.close();
+			}
+			status.clear();
+			for (Map.Entry<String, String> validator : validators.entrySet()) {
+				status.setProperty(validator.getKey(), validator.getValue());
+			}
+		}
+		status.setProperty(LAST_CHECKED, Long.toString(now));
+		saveStatus(statusFile, status);
+		return file;
+	}
+
+	/**
+	 * This class should never be instantiated
+	 * 
+	 * @since 1.0.0
+	 */
+	private MetadataCache() {
+	}
+}
@@ -0,0 +1,278 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A persistent cache of the files that a repository is known not to have, so
+ * that lookups that are known to fail do not need a network request
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class NegativeCache {
+	/**
+	 * How long a file is remembered as not found, in milliseconds (a value of
+	 * zero or less disables the cache)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final long TTL = Long.getLong("com.github.zachdeibert.mavendependencyruntime.notFoundTtl",
+			24 * 60 * 60 * 1000);
+	/**
+	 * The directory the caches for all repositories are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "not-found");
+	/**
+	 * The character set the cache files are stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	/**
+	 * The caches that have been loaded in this JVM, keyed by repository url
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ConcurrentMap<String, NegativeCache> CACHES = new ConcurrentHashMap<String, NegativeCache>();
+	/**
+	 * The file this cache is stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File file;
+	/**
+	 * The time each file was found to be missing, keyed by its path in the
+	 * repository, or <code>null</code> if the cache has not been loaded yet
+	 * 
+	 * @since 1.0.0
+	 */
+	private Map<String, Long> entries;
+
+	/**
+	 * Gets the cache for a repository
+	 * 
+	 * @param url
+	 *            The url of the repository
+	 * @return The cache
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the cache file name could not be computed
+	 */
+	static NegativeCache get(String url) throws IOException {
+		NegativeCache cache = CACHES.get(url);
+		if (cache == null) {
+			cache = new NegativeCache(new File(DIR, CacheFiles.hash(url)));
+			NegativeCache existing = CACHES.putIfAbsent(url, cache);
+			if (existing != null) {
+				cache = existing;
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Removes all entries from the caches of all repositories
+	 * 
+	 * @since 1.0.0
+	 */
+	static void invalidateAll() {
+		for (NegativeCache cache : CACHES.values()) {
+			cache.invalidate();
+		}
+		File[] files = DIR.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Checks if an entry is still within its time to live
+	 * 
+	 * @param time
+	 *            The time the entry was added
+	 * @param now
+	 *            The current time
+	 * @return If the entry is still valid
+	 * @since 1.0.0
+	 */
+	private static boolean isValid(long time, long now) {
+		return now - time < TTL && time <= now;
+	}
+
+	/**
+	 * Loads the cache from disk if it has not been loaded yet, dropping any
+	 * expired entries
+	 * 
+	 * @since 1.0.0
+	 */
+	private void load() {
+		if (entries != null) {
+			return;
+		}
+		entries = new HashMap<String, Long>();
+		boolean expired = false;
+		long now = System.currentTimeMillis();
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), CHARSET));
+			try {
+				for (String line; (line = reader.readLine()) != null;) {
+					int split = line.indexOf(' ');
+					if (split > 0) {
+						long time = Long.parseLong(line.substring(0, split));
+						if (isValid(time, now)) {
+							entries.put(line.substring(split + 1), time);
+						} else {
+							expired = true;
+						}
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (FileNotFoundException ex) {
+		} catch (IOException ex) {
+			expired = true;
+		} catch (NumberFormatException ex) {
+			expired = true;
+		}
+		if (expired) {
+			rewrite();
+		}
+	}
+
+	/**
+	 * Replaces the file on disk with the entries that are currently in memory
+	 * 
+	 * @since 1.0.0
+	 */
+	private void rewrite() {
+		try {
+			File tmp = CacheFiles.createTemp(file);
+			try {
+				Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), CHARSET));
+				try {
+					for (Map.Entry<String, Long> entry : entries.entrySet()) {
+						writer.write(String.format("%d %s\n", entry.getValue(), entry.getKey()));
+					}
+				} finally {
+					writer.close();
+				}
+				CacheFiles.moveIntoPlace(tmp, file);
+			} finally {
+				tmp.delete();
+			}
+		} catch (IOException ex) {
+		}
+	}
+
+	/**
+	 * Checks if a file is known to be missing from the repository
+	 * 
+	 * @param path
+	 *            The path of the file in the repository
+	 * @return If the file is known to be missing
+	 * @since 1.0.0
+	 */
+	synchronized boolean isMissing(String path) {
+		if (TTL <= 0) {
+			return false;
+		}
+		load();
+		Long time = entries.get(path);
+		if (time == null) {
+			return false;
+		} else if (isValid(time, System.currentTimeMillis())) {
+			return true;
+		} else {
+			entries.remove(path);
+			return false;
+		}
+	}
+
+	/**
+	 * Records that a file is missing from the repository
+	 * 
+	 * @param path
+	 *            The path of the file in the repository
+	 * @since 1.0.0
+	 */
+	synchronized void addMissing(String path) {
+		if (TTL <= 0) {
+			return;
+		}
+		load();
+		long now = System.currentTimeMillis();
+		entries.put(path, now);
+		try {
+			DIR.mkdirs();
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), CHARSET);
+			try {
+				writer.write(String.format("%d %s\n", now, path));
+			} finally {
+				writer.close();
+			}
+		} catch (IOException ex) {
+		}
+	}
+
+	/**
+	 * Removes all of the entries for files under a path from the cache
+	 * 
+	 * @param prefix
+	 *            The path prefix to remove entries for
+	 * @since 1.0.0
+	 */
+	synchronized void invalidate(String prefix) {
+		load();
+		boolean changed = false;
+		for (Iterator<String> it = entries.keySet().iterator(); it.hasNext();) {
+			if (it.next().startsWith(prefix)) {
+				it.remove();
+				changed = true;
+			}
+		}
+		if (changed) {
+			rewrite();
+		}
+	}
+
+	/**
+	 * Removes all of the entries from the cache
+	 * 
+	 * @since 1.0.0
+	 */
+	synchronized void invalidate() {
+		entries = new HashMap<String, Long>();
+		file.delete();
+	}
+
+	/**
+	 * Creates a new cache
+	 * 
+	 * @param file
+	 *            The file the cache is stored in
+	 * @since 1.0.0
+	 */
+	private NegativeCache(File file) {
+		this.file = file;
+	}
+}
@@ -0,0 +1,735 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.w3c.dom.Document;
+
+/**
+ * An immutable model of the parts of a pom that are needed to resolve its
+ * dependencies, read in a single streaming pass
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class PomModel {
+	/**
+	 * The factory that creates the streaming readers for poms
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final XMLInputFactory FACTORY;
+	/**
+	 * The path of the root element of a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PROJECT = "/project";
+	/**
+	 * The path of the parent section of a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PARENT = "/project/parent";
+	/**
+	 * The path of the properties section of a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PROPERTIES = "/project/properties";
+	/**
+	 * The path of each dependency of a pom (not including managed or plugin
+	 * dependencies)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String DEPENDENCY = "/project/dependencies/dependency";
+	/**
+	 * The path of each managed dependency of a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String MANAGED = "/project/dependencyManagement/dependencies/dependency";
+	/**
+	 * The path of each exclusion of a dependency, relative to the dependency
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String EXCLUSION = "/exclusions/exclusion";
+	/**
+	 * The path of each repository of a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String REPOSITORY = "/project/repositories/repository";
+	/**
+	 * The paths of all of the leaf elements that are read from a pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Set<String> LEAVES = new HashSet<String>(Arrays.asList(PROJECT.concat("/groupId"),
+			PROJECT.concat("/artifactId"), PROJECT.concat("/version"), PROJECT.concat("/packaging"),
+			PARENT.concat("/groupId"), PARENT.concat("/artifactId"), PARENT.concat("/version"),
+			DEPENDENCY.concat("/groupId"), DEPENDENCY.concat("/artifactId"), DEPENDENCY.concat("/version"),
+			DEPENDENCY.concat("/scope"), DEPENDENCY.concat("/type"), DEPENDENCY.concat("/optional"),
+			DEPENDENCY.concat(EXCLUSION).concat("/groupId"), DEPENDENCY.concat(EXCLUSION).concat("/artifactId"),
+			MANAGED.concat("/groupId"), MANAGED.concat("/artifactId"), MANAGED.concat("/version"),
+			MANAGED.concat("/scope"), MANAGED.concat("/type"), MANAGED.concat(EXCLUSION).concat("/groupId"),
+			MANAGED.concat(EXCLUSION).concat("/artifactId"), REPOSITORY.concat("/url"), REPOSITORY.concat("/releases/updatePolicy"),
+			REPOSITORY.concat("/snapshots/updatePolicy")));
+	/**
+	 * The ID of the group of the project, or <code>null</code> if it is
+	 * inherited
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String groupId;
+	/**
+	 * The ID of the artifact of the project
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String artifactId;
+	/**
+	 * The version of the project, or <code>null</code> if it is inherited
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String version;
+	/**
+	 * The packaging of the project, or <code>null</code> if it is not
+	 * specified
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String packaging;
+	/**
+	 * The ID of the group of the parent project, or <code>null</code> if there
+	 * is no parent
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String parentGroupId;
+	/**
+	 * The ID of the artifact of the parent project, or <code>null</code> if
+	 * there is no parent
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String parentArtifactId;
+	/**
+	 * The version of the parent project, or <code>null</code> if there is no
+	 * parent
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String parentVersion;
+	/**
+	 * The dependencies of the project (not including managed dependencies or
+	 * plugin dependencies)
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<DependencyModel> dependencies;
+	/**
+	 * The dependencies in the dependency management section of the project
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<DependencyModel> managedDependencies;
+	/**
+	 * The properties of the project, before any variables have been
+	 * substituted
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Map<String, String> properties;
+	/**
+	 * The repositories of the project
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<RepositoryModel> repositories;
+
+	static {
+		FACTORY = XMLInputFactory.newInstance();
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+	}
+
+	/**
+	 * A dependency as it is declared in the pom, before any variables have
+	 * been substituted
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class DependencyModel {
+		/**
+		 * The ID of the group
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String groupId;
+		/**
+		 * The ID of the artifact
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String artifactId;
+		/**
+		 * The version, or <code>null</code> if it is not specified
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String version;
+		/**
+		 * The scope, or <code>null</code> if it is not specified
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String scope;
+		/**
+		 * The type, or <code>null</code> if it is not specified
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String type;
+		/**
+		 * If the dependency is optional, or <code>null</code> if it is not
+		 * specified
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String optional;
+		/**
+		 * The exclusions of the dependency, as
+		 * <code>groupId:artifactId</code>
+		 * 
+		 * @since 1.0.0
+		 */
+		private final List<String> exclusions;
+
+		/**
+		 * Gets the ID of the group
+		 * 
+		 * @return The group ID
+		 * @since 1.0.0
+		 */
+		String getGroupId() {
+			return groupId;
+		}
+
+		/**
+		 * Gets the ID of the artifact
+		 * 
+		 * @return The artifact ID
+		 * @since 1.0.0
+		 */
+		String getArtifactId() {
+			return artifactId;
+		}
+
+		/**
+		 * Gets the version
+		 * 
+		 * @return The version, or <code>null</code> if it is not specified
+		 * @since 1.0.0
+		 */
+		String getVersion() {
+			return version;
+		}
+
+		/**
+		 * Gets the scope
+		 * 
+		 * @return The scope, or <code>null</code> if it is not specified
+		 * @since 1.0.0
+		 */
+		String getScope() {
+			return scope;
+		}
+
+		/**
+		 * Gets the type
+		 * 
+		 * @return The type, or <code>null</code> if it is not specified
+		 * @since 1.0.0
+		 */
+		String getType() {
+			return type;
+		}
+
+		/**
+		 * Gets if the dependency is optional
+		 * 
+		 * @return If the dependency is optional, or <code>null</code> if it
+		 *         is not specified
+		 * @since 1.0.0
+		 */
+		String getOptional() {
+			return optional;
+		}
+
+		/**
+		 * Gets the exclusions of the dependency
+		 * 
+		 * @return The list of exclusions, as <code>groupId:artifactId</code>
+		 * @since 1.0.0
+		 */
+		List<String> getExclusions() {
+			return exclusions;
+		}
+
+		/**
+		 * Creates a new dependency model
+		 * 
+		 * @param groupId
+		 *            The ID of the group
+		 * @param artifactId
+		 *            The ID of the artifact
+		 * @param version
+		 *            The version, or <code>null</code> if it is not specified
+		 * @param scope
+		 *            The scope, or <code>null</code> if it is not specified
+		 * @param type
+		 *            The type, or <code>null</code> if it is not specified
+		 * @param optional
+		 *            If the dependency is optional, or <code>null</code> if it
+		 *            is not specified
+		 * @param exclusions
+		 *            The exclusions of the dependency, as
+		 *            <code>groupId:artifactId</code>
+		 * @since 1.0.0
+		 */
+		DependencyModel(String groupId, String artifactId, String version, String scope, String type,
+				String optional, List<String> exclusions) {
+			this.groupId = groupId;
+			this.artifactId = artifactId;
+			this.version = version;
+			this.scope = scope;
+			this.type = type;
+			this.optional = optional;
+			this.exclusions = exclusions;
+		}
+	}
+
+	/**
+	 * A repository as it is declared in the pom
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class RepositoryModel {
+		/**
+		 * The url of the repository
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String url;
+		/**
+		 * The update policy of the repository, or <code>null</code> if it is
+		 * not specified
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String updatePolicy;
+
+		/**
+		 * Gets the url of the repository
+		 * 
+		 * @return The url
+		 * @since 1.0.0
+		 */
+		String getUrl() {
+			return url;
+		}
+
+		/**
+		 * Gets the update policy of the repository
+		 * 
+		 * @return The update policy, or <code>null</code> if it is not
+		 *         specified
+		 * @since 1.0.0
+		 */
+		String getUpdatePolicy() {
+			return updatePolicy;
+		}
+
+		/**
+		 * Creates a new repository model
+		 * 
+		 * @param url
+		 *            The url of the repository
+		 * @param updatePolicy
+		 *            The update policy of the repository, or <code>null</code>
+		 *            if it is not specified
+		 * @since 1.0.0
+		 */
+		RepositoryModel(String url, String updatePolicy) {
+			this.url = url;
+			this.updatePolicy = updatePolicy;
+		}
+	}
+
+	/**
+	 * Accumulates the fields of a pom while it is being read
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Builder {
+		/**
+		 * The text of the leaf fields that have been read, keyed by their path
+		 * from the root of the document
+		 * 
+		 * @since 1.0.0
+		 */
+		final Map<String, String> fields = new HashMap<String, String>();
+		/**
+		 * The dependencies that have been read
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<DependencyModel> dependencies = new ArrayList<DependencyModel>();
+		/**
+		 * The managed dependencies that have been read
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<DependencyModel> managedDependencies = new ArrayList<DependencyModel>();
+		/**
+		 * The properties that have been read
+		 * 
+		 * @since 1.0.0
+		 */
+		final Map<String, String> properties = new LinkedHashMap<String, String>();
+		/**
+		 * The repositories that have been read
+		 * 
+		 * @since 1.0.0
+		 */
+		final List<RepositoryModel> repositories = new ArrayList<RepositoryModel>();
+		/**
+		 * The exclusions of the dependency that is currently being read
+		 * 
+		 * @since 1.0.0
+		 */
+		List<String> exclusions = new ArrayList<String>();
+
+		/**
+		 * Adds the dependency whose fields have been read to a list
+		 * 
+		 * @param path
+		 *            The path of the dependency element from the root of the
+		 *            document
+		 * @param list
+		 *            The list to add the dependency to
+		 * @since 1.0.0
+		 */
+		private void addDependency(String path, List<DependencyModel> list) {
+			String groupId = fields.remove(path.concat("/groupId"));
+			String artifactId = fields.remove(path.concat("/artifactId"));
+			String version = fields.remove(path.concat("/version"));
+			String scope = fields.remove(path.concat("/scope"));
+			String type = fields.remove(path.concat("/type"));
+			String optional = fields.remove(path.concat("/optional"));
+			if (groupId != null && artifactId != null) {
+				list.add(new DependencyModel(groupId, artifactId, version, scope, type, optional,
+						exclusions.isEmpty() ? Collections.<String>emptyList()
+								: Collections.unmodifiableList(exclusions)));
+			}
+			exclusions = new ArrayList<String>();
+		}
+
+		/**
+		 * Adds the exclusion whose fields have been read to the dependency that
+		 * is currently being read. Like Maven, an exclusion without a group ID
+		 * or artifact ID is malformed, so it is ignored instead of being
+		 * treated as a wildcard (which would exclude everything); only an
+		 * explicit <code>*</code> is a wildcard.
+		 * 
+		 * @param path
+		 *            The path of the exclusion element from the root of the
+		 *            document
+		 * @since 1.0.0
+		 */
+		private void addExclusion(String path) {
+			String groupId = fields.remove(path.concat("/groupId"));
+			String artifactId = fields.remove(path.concat("/artifactId"));
+			if (groupId == null || groupId.isEmpty() || artifactId == null || artifactId.isEmpty()) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					System.out.printf("Ignoring malformed exclusion %s:%s\n", groupId, artifactId);
+				}
+			} else {
+				exclusions.add(groupId.concat(":").concat(artifactId));
+			}
+		}
+
+		/**
+		 * Called when an element that is not a leaf field ends
+		 * 
+		 * @param path
+		 *            The path of the element from the root of the document
+		 * @since 1.0.0
+		 */
+		void end(String path) {
+			if (path.equals(DEPENDENCY)) {
+				addDependency(DEPENDENCY, dependencies);
+			} else if (path.equals(MANAGED)) {
+				addDependency(MANAGED, managedDependencies);
+			} else if (path.equals(DEPENDENCY.concat(EXCLUSION)) || path.equals(MANAGED.concat(EXCLUSION))) {
+				addExclusion(path);
+			} else if (path.equals(REPOSITORY)) {
+				String url = fields.remove(REPOSITORY.concat("/url"));
+				String releases = fields.remove(REPOSITORY.concat("/releases/updatePolicy"));
+				String snapshots = fields.remove(REPOSITORY.concat("/snapshots/updatePolicy"));
+				if (url != null) {
+					repositories.add(new RepositoryModel(url, releases == null ? snapshots : releases));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the ID of the group of the project, which is inherited from the
+	 * parent if it is not specified
+	 * 
+	 * @return The group ID
+	 * @since 1.0.0
+	 */
+	String getGroupId() {
+		return groupId == null ? parentGroupId : groupId;
+	}
+
+	/**
+	 * Gets the ID of the artifact of the project
+	 * 
+	 * @return The artifact ID
+	 * @since 1.0.0
+	 */
+	String getArtifactId() {
+		return artifactId;
+	}
+
+	/**
+	 * Gets the version of the project, which is inherited from the parent if
+	 * it is not specified
+	 * 
+	 * @return The version
+	 * @since 1.0.0
+	 */
+	String getVersion() {
+		return version == null ? parentVersion : version;
+	}
+
+	/**
+	 * Gets the packaging of the project
+	 * 
+	 * @param def
+	 *            The value to return if the packaging is not specified
+	 * @return The packaging
+	 * @since 1.0.0
+	 */
+	String getPackaging(String def) {
+		return packaging == null ? def : packaging;
+	}
+
+	/**
+	 * Gets the dependencies of the project, not including managed
+	 * dependencies or plugin dependencies
+	 * 
+	 * @return The list of dependencies
+	 * @since 1.0.0
+	 */
+	List<DependencyModel> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Gets the dependencies in the dependency management section of the
+	 * project
+	 * 
+	 * @return The list of managed dependencies
+	 * @since 1.0.0
+	 */
+	List<DependencyModel> getManagedDependencies() {
+		return managedDependencies;
+	}
+
+	/**
+	 * Gets the properties of the project
+	 * 
+	 * @return The properties, before any variables have been substituted
+	 * @since 1.0.0
+	 */
+	Map<String, String> getProperties() {
+		return properties;
+	}
+
+	/**
+	 * Gets the ID of the group of the parent project
+	 * 
+	 * @return The group ID, or <code>null</code> if there is no parent
+	 * @since 1.0.0
+	 */
+	String getParentGroupId() {
+		return parentGroupId;
+	}
+
+	/**
+	 * Gets the ID of the artifact of the parent project
+	 * 
+	 * @return The artifact ID, or <code>null</code> if there is no parent
+	 * @since 1.0.0
+	 */
+	String getParentArtifactId() {
+		return parentArtifactId;
+	}
+
+	/**
+	 * Gets the version of the parent project
+	 * 
+	 * @return The version, or <code>null</code> if there is no parent
+	 * @since 1.0.0
+	 */
+	String getParentVersion() {
+		return parentVersion;
+	}
+
+	/**
+	 * Gets the repositories of the project
+	 * 
+	 * @return The list of repositories
+	 * @since 1.0.0
+	 */
+	List<RepositoryModel> getRepositories() {
+		return repositories;
+	}
+
+	/**
+	 * Reads a pom from a stream
+	 * 
+	 * @param stream
+	 *            The stream containing the pom (it is not closed)
+	 * @return The model of the pom
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred or the pom could not be parsed
+	 */
+	static PomModel parse(InputStream stream) throws IOException {
+		Builder builder = new Builder();
+		try {
+			XMLStreamReader reader = FACTORY.createXMLStreamReader(stream);
+			try {
+				String path = "";
+				while (reader.hasNext()) {
+					int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String child = path.concat("/").concat(reader.getLocalName());
+						if (path.equals(PROPERTIES)) {
+							builder.properties.put(reader.getLocalName(), reader.getElementText().trim());
+						} else if (LEAVES.contains(child)) {
+							builder.fields.put(child, reader.getElementText().trim());
+						} else {
+							path = child;
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT) {
+						builder.end(path);
+						path = path.substring(0, path.lastIndexOf('/'));
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException ex) {
+			throw new IOException("Unable to parse pom.xml", ex);
+		}
+		if (!builder.fields.containsKey(PROJECT.concat("/artifactId"))) {
+			throw new IOException("Unable to find required tag 'artifactId' in pom.xml");
+		}
+		return new PomModel(builder);
+	}
+
+	/**
+	 * Reads a pom from a file
+	 * 
+	 * @param file
+	 *            The pom file
+	 * @return The model of the pom
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred or the pom could not be parsed
+	 */
+	static PomModel parse(File file) throws IOException {
+		InputStream stream = new FileInputStream(file);
+		try {
+			return parse(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads a pom that has already been parsed into a document
+	 * 
+	 * @param doc
+	 *            The parsed pom
+	 * @return The model of the pom
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the pom could not be parsed
+	 */
+	static PomModel parse(Document doc) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
+		} catch (TransformerException ex) {
+			throw new IOException("Unable to serialize pom.xml", ex);
+		}
+		return parse(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	/**
+	 * Creates a new pom model
+	 * 
+	 * @param builder
+	 *            The fields that were read from the pom
+	 * @since 1.0.0
+	 */
+	private PomModel(Builder builder) {
+		groupId = builder.fields.get(PROJECT.concat("/groupId"));
+		artifactId = builder.fields.get(PROJECT.concat("/artifactId"));
+		version = builder.fields.get(PROJECT.concat("/version"));
+		packaging = builder.fields.get(PROJECT.concat("/packaging"));
+		parentGroupId = builder.fields.get(PARENT.concat("/groupId"));
+		parentArtifactId = builder.fields.get(PARENT.concat("/artifactId"));
+		parentVersion = builder.fields.get(PARENT.concat("/version"));
+		dependencies = Collections.unmodifiableList(builder.dependencies);
+		managedDependencies = Collections.unmodifiableList(builder.managedDependencies);
+		properties = Collections.unmodifiableMap(builder.properties);
+		repositories = Collections.unmodifiableList(builder.repositories);
+	}
+}
@@ -0,0 +1,306 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The parsed form of a cached pom, stored in a small binary file in the
+ * writable cache directory (keyed by the coordinates of the pom, since the pom
+ * itself may be in a read-only tier) so that warm resolutions do not have to
+ * parse the xml again. The dependencies in it are already interpolated, merged
+ * with the ones inherited from its parents and filtered by scope.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class PomSidecar {
+	/**
+	 * The magic number at the start of every sidecar file
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int MAGIC = 0x4d445250;
+	/**
+	 * The version of the sidecar file format
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int FORMAT_VERSION = 8;
+	/**
+	 * The extension of sidecar files
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String EXTENSION = "pom.parsed";
+	/**
+	 * The directory to store the sidecar files in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "parsed");
+	/**
+	 * If sidecar files should be used
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final boolean ENABLED = !"false"
+			.equalsIgnoreCase(System.getProperty("com.github.zachdeibert.mavendependencyruntime.pomSidecars"));
+	/**
+	 * The repositories that are declared in the pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<Repository> repositories;
+	/**
+	 * The dependencies of the pom that are in the requested scopes
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<Dependency> dependencies;
+	/**
+	 * If all of the parents and boms of the pom could be loaded
+	 * 
+	 * @since 1.0.0
+	 */
+	private final boolean complete;
+
+	/**
+	 * Gets the list of repositories to download the dependencies of the pom
+	 * from
+	 * 
+	 * @return The list of repositories, in the order they should be tried
+	 * @since 1.0.0
+	 */
+	List<Repository> getRepositories() {
+		return MavenDependencies.getRepositories(repositories);
+	}
+
+	/**
+	 * Gets the dependencies of the pom that are in the requested scopes
+	 * 
+	 * @return The list of dependencies
+	 * @since 1.0.0
+	 */
+	List<Dependency> getDependencies() {
+		return dependencies;
+	}
+
+	/**
+	 * Checks if all of the parents and boms of the pom could be loaded. Only
+	 * complete poms are saved in sidecars.
+	 * 
+	 * @return If the pom is complete
+	 * @since 1.0.0
+	 */
+	boolean isComplete() {
+		return complete;
+	}
+
+	/**
+	 * Gets the file the sidecar of a pom is stored in
+	 * 
+	 * @param dep
+	 *            The coordinates of the pom
+	 * @return The sidecar file
+	 * @since 1.0.0
+	 */
+	private static File getFile(Dependency dep) {
+		return dep.getFile(DIR, EXTENSION);
+	}
+
+	/**
+	 * Encodes a set of scopes as a bit mask
+	 * 
+	 * @param scopes
+	 *            The scopes
+	 * @return The bit mask
+	 * @since 1.0.0
+	 */
+	private static int getScopeMask(Set<DependencyScope> scopes) {
+		int mask = 0;
+		for (DependencyScope scope : scopes) {
+			mask |= 1 << scope.ordinal();
+		}
+		return mask;
+	}
+
+	/**
+	 * Reads the sidecar of a pom, if it is still valid for the pom
+	 * 
+	 * @param dep
+	 *            The coordinates of the pom
+	 * @param pom
+	 *            The pom file
+	 * @param scopes
+	 *            The scopes the dependencies need to be in
+	 * @return The sidecar, or <code>null</code> if there is no valid sidecar
+	 * @since 1.0.0
+	 */
+	private static PomSidecar read(Dependency dep, final File pom, final Set<DependencyScope> scopes) {
+		return CacheFiles.read(getFile(dep), MAGIC, FORMAT_VERSION, new CacheFiles.BinaryReader<PomSidecar>() {
+			@Override
+			public PomSidecar read(DataInputStream in) throws IOException {
+				if (!in.readUTF().equals(pom.getAbsolutePath()) || in.readLong() != pom.length()
+						|| in.readLong() != pom.lastModified() || in.readInt() != getScopeMask(scopes)) {
+					return null;
+				}
+				int count = in.readInt();
+				for (int i = 0; i < count; ++i) {
+					File source = new File(in.readUTF());
+					if (source.length() != in.readLong() || source.lastModified() != in.readLong()) {
+						return null;
+					}
+				}
+				count = in.readInt();
+				List<Repository> repos = new ArrayList<Repository>(count);
+				for (int i = 0; i < count; ++i) {
+					repos.add(new Repository(in.readUTF(), in.readUTF()));
+				}
+				count = in.readInt();
+				List<Dependency> deps = new ArrayList<Dependency>(count);
+				for (int i = 0; i < count; ++i) {
+					String groupId = in.readUTF();
+					String artifactId = in.readUTF();
+					String version = in.readBoolean() ? in.readUTF() : Dependency.LATEST_VERSION;
+					DependencyScope scope = DependencyScope.values()[in.readByte()];
+					boolean optional = in.readBoolean();
+					int exclusionCount = in.readInt();
+					List<String> exclusions = new ArrayList<String>(exclusionCount);
+					for (int j = 0; j < exclusionCount; ++j) {
+						exclusions.add(in.readUTF());
+					}
+					deps.add(Dependency.valueOf(groupId, artifactId, version, scope, optional, exclusions));
+				}
+				return new PomSidecar(repos, deps, true);
+			}
+		});
+	}
+
+	/**
+	 * Writes the sidecar of a pom
+	 * 
+	 * @param artifact
+	 *            The coordinates of the pom
+	 * @param pom
+	 *            The pom file
+	 * @param length
+	 *            The size of the pom when it was parsed
+	 * @param modified
+	 *            The modification time of the pom when it was parsed
+	 * @param scopes
+	 *            The scopes the dependencies were filtered by
+	 * @param sources
+	 *            The pom files of the parents and boms the pom was built from
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private void write(Dependency artifact, final File pom, final long length, final long modified,
+			final Set<DependencyScope> scopes, final List<File> sources) throws IOException {
+		CacheFiles.write(getFile(artifact), MAGIC, FORMAT_VERSION, new CacheFiles.BinaryWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeUTF(pom.getAbsolutePath());
+				out.writeLong(length);
+				out.writeLong(modified);
+				out.writeInt(getScopeMask(scopes));
+				out.writeInt(sources.size());
+				for (File source : sources) {
+					out.writeUTF(source.getAbsolutePath());
+					out.writeLong(source.length());
+					out.writeLong(source.lastModified());
+				}
+				out.writeInt(repositories.size());
+				for (Repository repo : repositories) {
+					out.writeUTF(repo.getUrl());
+					out.writeUTF(repo.getUpdatePolicy().toString());
+				}
+				out.writeInt(dependencies.size());
+				for (Dependency dep : dependencies) {
+					out.writeUTF(dep.getGroupId());
+					out.writeUTF(dep.getArtifactId());
+					String version = dep.getVersionSpec();
+					out.writeBoolean(version != Dependency.LATEST_VERSION);
+					if (version != Dependency.LATEST_VERSION) {
+						out.writeUTF(version);
+					}
+					out.writeByte(dep.getScope().ordinal());
+					out.writeBoolean(dep.isOptional());
+					out.writeInt(dep.getExclusions().size());
+					for (String exclusion : dep.getExclusions()) {
+						out.writeUTF(exclusion);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Loads the parsed form of a pom, from its sidecar if it has a valid one
+	 * or by parsing the pom and writing a new sidecar otherwise
+	 * 
+	 * @param dep
+	 *            The coordinates of the pom
+	 * @param pom
+	 *            The pom file
+	 * @param scopes
+	 *            The scopes the dependencies need to be in
+	 * @param builder
+	 *            The builder to build the effective model of the pom with
+	 * @param repositories
+	 *            The list of repositories to fetch the parents of the pom from
+	 * @return The parsed pom
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the pom could not be read or parsed
+	 */
+	static PomSidecar load(Dependency dep, File pom, Set<DependencyScope> scopes, EffectivePomBuilder builder,
+			List<Repository> repositories) throws IOException {
+		if (ENABLED) {
+			PomSidecar sidecar = read(dep, pom, scopes);
+			if (sidecar != null) {
+				return sidecar;
+			}
+		}
+		long length = pom.length();
+		long modified = pom.lastModified();
+		EffectivePom model = builder.build(PomModel.parse(pom), repositories);
+		PomSidecar sidecar = new PomSidecar(model.getDeclaredRepositories(), model.getDependencies(scopes),
+				model.isComplete());
+		// a parent or bom that failed to load (maybe just for now) would
+		// otherwise be left out of every later run
+		if (ENABLED && model.isComplete()) {
+			try {
+				sidecar.write(dep, pom, length, modified, scopes, model.getSources());
+			} catch (IOException ex) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					ex.printStackTrace();
+				}
+			}
+		}
+		return sidecar;
+	}
+
+	/**
+	 * Creates a new parsed pom
+	 * 
+	 * @param repositories
+	 *            The repositories that are declared in the pom
+	 * @param dependencies
+	 *            The dependencies of the pom that are in the requested scopes
+	 * @param complete
+	 *            If all of the parents and boms of the pom could be loaded
+	 * @since 1.0.0
+	 */
+	private PomSidecar(List<Repository> repositories, List<Dependency> dependencies, boolean complete) {
+		this.repositories = Collections.unmodifiableList(repositories);
+		this.dependencies = Collections.unmodifiableList(dependencies);
+		this.complete = complete;
+	}
+}
@@ -9,7 +9,8 @@ package com.github.zachdeibert.mavendependencyruntime;
  */
 class PreMain {
 	/**
-	 * Downloads all of the Maven dependencies
+	 * Downloads all of the Maven dependencies, unless this is the child JVM
+	 * from {@link AppCds}, which already has them on its classpath
 	 * 
 	 * @param args
 	 *            The command line parameters to this application
@@ -18,6 +19,8 @@ class PreMain {
 	 *             If an error occurs
 	 */
 	public static void main(String[] args) throws Exception {
-		MavenDependencies.download();
+		if (!AppCds.isChild()) {
+			MavenDependencies.download();
+		}
 	}
 }
@@ -0,0 +1,341 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the premains that are listed in the
+ * <code>com/github/zachdeibert/mavendependencyruntime/premains</code>
+ * directory. Each file in that directory lists premain classes (one per line)
+ * that are run in the order they are listed, and the files are run in the
+ * order of the number at the start of their names. A file can also contain
+ * these lines:
+ * <ul>
+ * <li><code>#parallel</code>, which means that the premains in it do not have
+ * to wait for the files before it, and the files after it do not have to wait
+ * for it</li>
+ * <li><code>#after name</code>, which means that the premains in it have to
+ * wait for the file with that name (with or without its number) to finish</li>
+ * </ul>
+ * If any file is marked as parallel, the files are run on a pool of threads
+ * and each one starts as soon as the files it has to wait for have finished.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class PremainSchedule {
+	/**
+	 * The line that marks a file as not depending on the files before it
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PARALLEL = "#parallel";
+	/**
+	 * The start of a line that makes a file wait for another file
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String AFTER = "#after ";
+	/**
+	 * The files that are in the schedule
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<Step> steps;
+
+	/**
+	 * A single file of premains
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class Step {
+		/**
+		 * The name of the file
+		 * 
+		 * @since 1.0.0
+		 */
+		private final String name;
+		/**
+		 * The number at the start of the name, or {@link Integer#MAX_VALUE} if
+		 * it does not start with a number
+		 * 
+		 * @since 1.0.0
+		 */
+		private final int order;
+		/**
+		 * The fully qualified names of the premain classes, in the order they
+		 * are listed
+		 * 
+		 * @since 1.0.0
+		 */
+		private final List<String> classes;
+		/**
+		 * The names of the files that this file has to wait for
+		 * 
+		 * @since 1.0.0
+		 */
+		private final List<String> after;
+		/**
+		 * If this file does not have to wait for the files before it
+		 * 
+		 * @since 1.0.0
+		 */
+		private boolean parallel;
+
+		/**
+		 * Gets the name of the file without the number at the start of it
+		 * 
+		 * @return The name
+		 * @since 1.0.0
+		 */
+		String getShortName() {
+			int dash = name.indexOf('-');
+			return order == Integer.MAX_VALUE || dash < 0 ? name : name.substring(dash + 1);
+		}
+
+		/**
+		 * Runs all of the premains in the file and logs how long they took
+		 * 
+		 * @param args
+		 *            The command line parameters to the application
+		 * @param loader
+		 *            The class loader to load the premains with
+		 * @since 1.0.0
+		 * @throws Exception
+		 *             If one of the premains threw an exception
+		 */
+		void execute(String[] args, ClassLoader loader) throws Exception {
+			for (String cls : classes) {
+				long start = System.nanoTime();
+				Main.execMain(cls, loader, args);
+				if (MavenDependencies.ENABLE_LOGGING) {
+					System.out.printf("Premain %s from %s took %d ms\n", cls, name,
+							(System.nanoTime() - start) / 1000000);
+				}
+			}
+		}
+
+		/**
+		 * Reads a file of premains
+		 * 
+		 * @param name
+		 *            The name of the file
+		 * @param stream
+		 *            The stream containing the file
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If an I/O error has occurred
+		 */
+		Step(String name, InputStream stream) throws IOException {
+			this.name = name;
+			int digits = 0;
+			while (digits < name.length() && digits < 9 && Character.isDigit(name.charAt(digits))) {
+				++digits;
+			}
+			order = digits == 0 ? Integer.MAX_VALUE : Integer.parseInt(name.substring(0, digits));
+			classes = new ArrayList<String>();
+			after = new ArrayList<String>();
+			Scanner scan = new Scanner(stream);
+			while (scan.hasNext()) {
+				String line = scan.nextLine().trim();
+				if (line.equals(PARALLEL)) {
+					parallel = true;
+				} else if (line.startsWith(AFTER)) {
+					after.add(line.substring(AFTER.length()).trim());
+				} else if (!line.isEmpty() && !line.startsWith("#")) {
+					classes.add(line);
+				}
+			}
+			scan.close();
+			stream.close();
+		}
+	}
+
+	/**
+	 * Adds a file to the schedule
+	 * 
+	 * @param step
+	 *            The file
+	 * @since 1.0.0
+	 */
+	void add(Step step) {
+		steps.add(step);
+	}
+
+	/**
+	 * Sorts the files in the order of the numbers at the start of their names
+	 * and finds the files that each of them has to wait for
+	 * 
+	 * @return The files that each file has to wait for, with the files in an
+	 *         order where every file comes after the files it waits for
+	 * @since 1.0.0
+	 */
+	private Map<Step, List<Step>> plan() {
+		List<Step> sorted = new ArrayList<Step>(steps);
+		Collections.sort(sorted, new Comparator<Step>() {
+			@Override
+			public int compare(Step a, Step b) {
+				if (a.order != b.order) {
+					return a.order < b.order ? -1 : 1;
+				}
+				return a.name.compareTo(b.name);
+			}
+		});
+		Map<String, Step> names = new HashMap<String, Step>();
+		for (Step step : sorted) {
+			names.put(step.getShortName(), step);
+		}
+		for (Step step : sorted) {
+			names.put(step.name, step);
+		}
+		Map<Step, List<Step>> waits = new HashMap<Step, List<Step>>();
+		Step previous = null;
+		for (Step step : sorted) {
+			List<Step> list = new ArrayList<Step>();
+			if (!step.parallel) {
+				if (previous != null) {
+					list.add(previous);
+				}
+				previous = step;
+			}
+			for (String name : step.after) {
+				Step other = names.get(name);
+				if (other == null) {
+					if (MavenDependencies.ENABLE_LOGGING) {
+						System.out.printf("Premain %s waits for %s, which does not exist\n", step.name, name);
+					}
+				} else if (other != step && !list.contains(other)) {
+					list.add(other);
+				}
+			}
+			waits.put(step, list);
+		}
+		Map<Step, List<Step>> order = new LinkedHashMap<Step, List<Step>>();
+		while (order.size() < sorted.size()) {
+			boolean progress = false;
+			for (Step step : sorted) {
+				if (!order.containsKey(step) && order.keySet().containsAll(waits.get(step))) {
+					order.put(step, waits.get(step));
+					progress = true;
+				}
+			}
+			if (!progress) {
+				throw new IllegalStateException("Cycle in the order of the premains");
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Creates the factory for the threads that run premains
+	 * 
+	 * @return The thread factory
+	 * @since 1.0.0
+	 */
+	private static ThreadFactory createThreadFactory() {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r,
+						"maven-dependency-runtime-premain-".concat(Integer.toString(count.getAndIncrement())));
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Runs all of the premains. If none of the files are marked as parallel,
+	 * they are run one after another on this thread; otherwise each file is
+	 * run on a pool of threads as soon as the files it waits for have
+	 * finished. A file that waits for a file that failed is not run.
+	 * 
+	 * @param args
+	 *            The command line parameters to the application
+	 * @param loader
+	 *            The class loader to load the premains with, which is the same
+	 *            one that the main class is loaded with
+	 * @since 1.0.0
+	 * @throws Exception
+	 *             If one of the premains threw an exception
+	 */
+	void run(final String[] args, final ClassLoader loader) throws Exception {
+		Map<Step, List<Step>> order = plan();
+		boolean parallel = false;
+		for (Step step : order.keySet()) {
+			parallel |= step.parallel;
+		}
+		if (!parallel) {
+			for (Step step : order.keySet()) {
+				step.execute(args, loader);
+			}
+			return;
+		}
+		// premains are usually waiting on I/O, so give each file its own thread
+		ExecutorService pool = Executors.newFixedThreadPool(order.size(), createThreadFactory());
+		try {
+			final Map<Step, FutureTask<Void>> tasks = new HashMap<Step, FutureTask<Void>>();
+			for (Map.Entry<Step, List<Step>> entry : order.entrySet()) {
+				final Step step = entry.getKey();
+				final List<Step> waits = entry.getValue();
+				FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (Step other : waits) {
+							tasks.get(other).get();
+						}
+						step.execute(args, loader);
+						return null;
+					}
+				});
+				tasks.put(step, task);
+			}
+			// Every task is in the map before any of them can look up the
+			// ones they wait for
+			for (Step step : order.keySet()) {
+				pool.execute(tasks.get(step));
+			}
+			for (Step step : order.keySet()) {
+				try {
+					tasks.get(step).get();
+				} catch (ExecutionException ex) {
+					Throwable cause = ex.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					} else if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+					throw ex;
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Creates a new empty schedule
+	 * 
+	 * @since 1.0.0
+	 */
+	PremainSchedule() {
+		steps = new ArrayList<Step>();
+	}
+}
@@ -0,0 +1,185 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Base class for anything that substitutes <code>${...}</code> variables in a
+ * single pass over the text. The value of each variable is only resolved once
+ * and is remembered for later substitutions.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+abstract class PropertyInterpolator {
+	/**
+	 * The values of the variables that have already been resolved
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ConcurrentMap<String, String> resolved;
+
+	/**
+	 * Gets the raw value of a variable, which may contain more variables
+	 * 
+	 * @param key
+	 *            The key of the variable
+	 * @return The raw value, or <code>null</code> if the variable is not
+	 *         defined
+	 * @since 1.0.0
+	 */
+	protected abstract String getValue(String key);
+
+	/**
+	 * Resolves the value of a variable
+	 * 
+	 * @param key
+	 *            The key of the variable
+	 * @param stack
+	 *            The keys of the variables that are currently being resolved,
+	 *            used to detect cycles
+	 * @return The value of the variable with all of its variables replaced
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If the variable could not be resolved
+	 */
+	private String resolve(String key, List<String> stack) throws ParseException {
+		String value = resolved.get(key);
+		if (value != null) {
+			return value;
+		}
+		if (stack.contains(key)) {
+			StringBuilder cycle = new StringBuilder();
+			for (String part : stack.subList(stack.indexOf(key), stack.size())) {
+				cycle.append(part).append(" -> ");
+			}
+			throw new ParseException(String.format("Cycle in variables: %s%s", cycle, key), -1);
+		}
+		value = getValue(key);
+		if (value == null) {
+			throw new ParseException(String.format("Unknown variable '%s'", key), -1);
+		}
+		stack.add(key);
+		try {
+			value = interpolate(value, stack);
+		} finally {
+			stack.remove(stack.size() - 1);
+		}
+		resolved.put(key, value);
+		return value;
+	}
+
+	/**
+	 * Replaces all the variables in a string of text
+	 * 
+	 * @param text
+	 *            The text to replace the variables in
+	 * @param stack
+	 *            The keys of the variables that are currently being resolved,
+	 *            used to detect cycles
+	 * @return The text with all the variables replaced
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If a variable could not be resolved
+	 */
+	private String interpolate(String text, List<String> stack) throws ParseException {
+		int start = text.indexOf("${");
+		if (start < 0) {
+			return text;
+		}
+		StringBuilder str = new StringBuilder(text.length());
+		int pos = 0;
+		while (start >= 0) {
+			int end = text.indexOf('}', start + 2);
+			if (end < 0) {
+				break;
+			}
+			str.append(text, pos, start).append(resolve(text.substring(start + 2, end), stack));
+			pos = end + 1;
+			start = text.indexOf("${", pos);
+		}
+		return str.append(text, pos, text.length()).toString();
+	}
+
+	/**
+	 * Replaces all the variables in a string of text
+	 * 
+	 * @param text
+	 *            The text to replace the variables in
+	 * @return The text with all the variables replaced, or <code>null</code>
+	 *         if the text was <code>null</code>
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If a variable could not be resolved
+	 */
+	String interpolate(String text) throws ParseException {
+		if (text == null) {
+			return null;
+		}
+		return interpolate(text, new ArrayList<String>());
+	}
+
+	/**
+	 * Replaces all the variables in a string of text, falling back to a
+	 * default value if the text is missing or cannot be resolved
+	 * 
+	 * @param text
+	 *            The text to replace the variables in, or <code>null</code>
+	 * @param def
+	 *            The default value, or <code>null</code> if the value is
+	 *            required
+	 * @return The text with all the variables replaced, or <code>def</code>
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If the value is required but is missing or could not be
+	 *             resolved
+	 */
+	String interpolate(String text, String def) throws ParseException {
+		if (text == null) {
+			if (def == null) {
+				throw new ParseException("Missing required value in pom", -1);
+			}
+			return def;
+		}
+		try {
+			return interpolate(text);
+		} catch (ParseException ex) {
+			if (def == null) {
+				throw ex;
+			}
+			return def;
+		}
+	}
+
+	/**
+	 * Gets the value of a variable from the environment of the JVM, for
+	 * <code>env.*</code> variables and system properties
+	 * 
+	 * @param key
+	 *            The key of the variable
+	 * @return The value, or <code>null</code> if it is not defined
+	 * @since 1.0.0
+	 */
+	static String getEnvironmentValue(String key) {
+		try {
+			if (key.startsWith("env.")) {
+				return System.getenv(key.substring("env.".length()));
+			}
+			return System.getProperty(key);
+		} catch (SecurityException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a new interpolator
+	 * 
+	 * @since 1.0.0
+	 */
+	PropertyInterpolator() {
+		resolved = new ConcurrentHashMap<String, String>();
+	}
+}
@@ -1,18 +1,24 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URL;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
 
 /**
  * Represents a maven repository that artifacts can be downloaded from
@@ -33,6 +39,51 @@ public class Repository extends AbstractXmlParser {
 	 * @since 1.0.0
 	 */
 	private final String url;
+	/**
+	 * The policy for how often cached metadata from this repository should be
+	 * checked for updates
+	 * 
+	 * @since 1.0.0
+	 */
+	private final UpdatePolicy updatePolicy;
+	/**
+	 * The transport that is used to fetch files from all repositories
+	 * 
+	 * @since 1.0.0
+	 */
+	private static volatile Transport transport = new HttpTransport();
+	/**
+	 * The set of repository urls that connections have already been warmed up
+	 * for
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final Set<String> WARMED_UP = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Gets the transport that is used to fetch files from all repositories
+	 * 
+	 * @return The transport
+	 * @since 1.0.0
+	 */
+	public static Transport getTransport() {
+		return transport;
+	}
+
+	/**
+	 * Sets the transport that is used to fetch files from all repositories
+	 * 
+	 * @param transport
+	 *            The transport
+	 * @since 1.0.0
+	 */
+	public static void setTransport(Transport transport) {
+		if (transport == null) {
+			throw new IllegalArgumentException("Transport cannot be null");
+		}
+		Repository.transport = transport;
+	}
 
 	/**
 	 * Gets the url the repository is at
@@ -44,6 +95,97 @@ public class Repository extends AbstractXmlParser {
 		return url;
 	}
 
+	/**
+	 * Gets how often cached metadata from this repository is checked for
+	 * updates
+	 * 
+	 * @return The update policy
+	 * @since 1.0.0
+	 */
+	UpdatePolicy getUpdatePolicy() {
+		return updatePolicy;
+	}
+
+	/**
+	 * Opens a stream to a file in this repository, unless the file is already
+	 * known to be missing from it
+	 * 
+	 * @param path
+	 *            The path of the file relative to the root of the repository
+	 * @param validators
+	 *            The validators to make a conditional request with, or
+	 *            <code>null</code> to always download the file
+	 * @return The stream containing the file, or <code>null</code> if the file
+	 *         has not changed since the validators were received
+	 * @see Transport#openStreamIfModified(URL, java.util.Map)
+	 * @since 1.0.0
+	 * @throws FileNotFoundException
+	 *             If the file does not exist in this repository
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	InputStream openStream(String path, Map<String, String> validators) throws IOException {
+		NegativeCache notFound = NegativeCache.get(getUrl());
+		if (notFound.isMissing(path)) {
+			throw new FileNotFoundException(String.format("%s/%s (cached as not found)", getUrl(), path));
+		}
+		URL url = new URL(String.format("%s/%s", getUrl(), path));
+		try {
+			if (validators == null) {
+				return getTransport().openStream(url);
+			} else {
+				return getTransport().openStreamIfModified(url, validators);
+			}
+		} catch (FileNotFoundException ex) {
+			notFound.addMissing(path);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Forgets all of the files that were found to be missing from this
+	 * repository, so that they are requested again the next time they are
+	 * needed
+	 * 
+	 * @since 1.0.0
+	 */
+	public void invalidateNotFound() {
+		if (getUrl() != null) {
+			try {
+				NegativeCache.get(getUrl()).invalidate();
+			} catch (IOException ex) {
+			}
+		}
+	}
+
+	/**
+	 * Forgets the files of a dependency that were found to be missing from
+	 * this repository, so that they are requested again the next time they are
+	 * needed
+	 * 
+	 * @param dep
+	 *            The dependency to forget the missing files of
+	 * @since 1.0.0
+	 */
+	public void invalidateNotFound(Dependency dep) {
+		if (getUrl() != null) {
+			try {
+				NegativeCache.get(getUrl()).invalidate(dep.getArtifactPath().concat("/"));
+			} catch (IOException ex) {
+			}
+		}
+	}
+
+	/**
+	 * Forgets all of the files that were found to be missing from any
+	 * repository
+	 * 
+	 * @since 1.0.0
+	 */
+	public static void invalidateAllNotFound() {
+		NegativeCache.invalidateAll();
+	}
+
 	/**
 	 * Downloads a file from this repository
 	 * 
@@ -56,36 +198,53 @@ public class Repository extends AbstractXmlParser {
 	 *             If an I/O error has occurred
 	 */
 	public void download(Dependency dep, File out) throws IOException {
-		URL url = new URL(String.format("%s/%s/%s/%s/%s", getUrl(), dep.getGroupId().replace('.', '/'),
-				dep.getArtifactId(), dep.getVersion(), out.getName()));
-		InputStream ins = url.openStream();
-		OutputStream outs = new FileOutputStream(out);
-		byte[] buffer = new byte[4096];
-		for (int len; (len = ins.read(buffer)) > 0; outs.write(buffer, 0, len))
-			;
-		outs.close();
-		ins.close();
+		String path = String.format("%s/%s/%s", dep.getArtifactPath(), dep.getVersion(), out.getName());
+		InputStream ins = openStream(path, null);
+		try {
+			CacheFiles.save(ins, out);
+		} finally {
+			ins.close();
+		}
 	}
 
 	/**
-	 * Sets the latest version of a dependency if it was not specified in the
-	 * pom
+	 * Resolves the latest version of a dependency if it was not specified in
+	 * the pom, or the highest version in its range if it was specified as a
+	 * range
 	 * 
 	 * @param dep
-	 *            The dependency to set
+	 *            The dependency to resolve
+	 * @return The dependency with its version resolved
 	 * @since 1.0.0
 	 * @throws IOException
 	 *             If an I/O error has occurred
 	 */
-	public void setVersion(Dependency dep) throws IOException {
-		URL url = new URL(String.format("%s/%s/%s/maven-metadata.xml", getUrl(), dep.getGroupId().replace('.', '/'),
-				dep.getArtifactId()));
+	public Dependency resolveVersion(Dependency dep) throws IOException {
+		String path = dep.getArtifactPath().concat("/maven-metadata.xml");
 		try {
 			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
 			DocumentBuilder builder = factory.newDocumentBuilder();
-			InputStream ins = url.openStream();
-			Document doc = builder.parse(ins);
-			dep.setVersion(find("release", doc.getDocumentElement(), find("version", doc.getDocumentElement(), null)));
+			Document doc = builder.parse(MetadataCache.fetch(this, path, updatePolicy));
+			VersionRange range = dep.getVersionRange();
+			if (range == null) {
+				return dep.withVersion(
+						find("release", doc.getDocumentElement(), find("version", doc.getDocumentElement(), null)));
+			} else {
+				List<Version> versions = new ArrayList<Version>();
+				NodeList nodes = doc.getElementsByTagName("versions");
+				for (int i = 0; i < nodes.getLength(); ++i) {
+					NodeList children = ((Element) nodes.item(i)).getElementsByTagName("version");
+					for (int j = 0; j < children.getLength(); ++j) {
+						versions.add(Version.valueOf(children.item(j).getTextContent().trim()));
+					}
+				}
+				Version version = range.select(versions);
+				if (version == null) {
+					throw new IOException(String.format("No version of %s:%s in range %s", dep.getGroupId(),
+							dep.getArtifactId(), range));
+				}
+				return dep.withVersion(version.toString());
+			}
 		} catch (IOException ex) {
 			throw ex;
 		} catch (RuntimeException ex) {
@@ -95,6 +254,26 @@ public class Repository extends AbstractXmlParser {
 		}
 	}
 
+	/**
+	 * Opens a connection to this repository ahead of time, so that the first
+	 * download from it does not have to wait for the connection to be set up.
+	 * Each repository is only warmed up once.
+	 * 
+	 * @since 1.0.0
+	 */
+	public void warmUp() {
+		String url = getUrl();
+		if (url != null && WARMED_UP.add(url)) {
+			try {
+				getTransport().warmUp(new URL(url.concat("/")));
+			} catch (IOException ex) {
+				if (MavenDependencies.ENABLE_LOGGING) {
+					System.out.printf("Unable to warm up connection to %s: %s\n", url, ex);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Creates a new repository with the specified url
 	 * 
@@ -103,7 +282,24 @@ public class Repository extends AbstractXmlParser {
 	 * @since 1.0.0
 	 */
 	public Repository(String url) {
-		this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+		this(url, null);
+	}
+
+	/**
+	 * Creates a new repository with the specified url and update policy
+	 * 
+	 * @param url
+	 *            The url of the repository
+	 * @param updatePolicy
+	 *            How often cached metadata should be checked for updates
+	 *            (<code>always</code>, <code>daily</code>,
+	 *            <code>interval:N</code> or <code>never</code>), or
+	 *            <code>null</code> to use the default policy
+	 * @since 1.0.0
+	 */
+	public Repository(String url, String updatePolicy) {
+		this.url = url == null || !url.endsWith("/") ? url : url.substring(0, url.length() - 1);
+		this.updatePolicy = updatePolicy == null ? UpdatePolicy.DEFAULT : UpdatePolicy.parse(updatePolicy);
 	}
 
 	/**
@@ -116,7 +312,23 @@ public class Repository extends AbstractXmlParser {
 	 *             If the xml could not be parsed
 	 */
 	public Repository(Element node) throws ParseException {
-		this(find("url", node, null));
+		this(find("url", node, null), find("updatePolicy", node, UpdatePolicy.DEFAULT.toString()));
+	}
+
+	/**
+	 * Creates a new repository from the model of a pom
+	 * 
+	 * @param pom
+	 *            The pom the repository is declared in
+	 * @param node
+	 *            The repository as it is declared in the pom
+	 * @since 1.0.0
+	 * @throws ParseException
+	 *             If the url of the repository could not be resolved
+	 */
+	Repository(EffectivePom pom, PomModel.RepositoryModel node) throws ParseException {
+		this(pom.interpolate(node.getUrl(), null),
+				pom.interpolate(node.getUpdatePolicy(), UpdatePolicy.DEFAULT.toString()));
 	}
 
 	/**
@@ -0,0 +1,274 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A thread-safe registry of all of the dependencies that have been resolved (or
+ * are currently being resolved) in this JVM, so that each artifact is only
+ * fetched once, and in only one version, even when multiple threads are
+ * downloading dependencies at the same time
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class ResolutionRegistry {
+	/**
+	 * A single resolution run that claims coordinates in the registry
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class Resolution {
+		/**
+		 * The latch that is released once the run has finished all of its own
+		 * work
+		 * 
+		 * @since 1.0.0
+		 */
+		private final CountDownLatch done;
+		/**
+		 * The dependencies that were resolved by this run
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Set<Dependency> resolved;
+		/**
+		 * The other runs that own coordinates this run depends on
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Set<Resolution> dependsOn;
+		/**
+		 * The error that caused this run to fail, or <code>null</code> if it
+		 * has not failed
+		 * 
+		 * @since 1.0.0
+		 */
+		private volatile IOException failure;
+
+		/**
+		 * Records that a dependency was resolved by this run
+		 * 
+		 * @param dep
+		 *            The dependency
+		 * @since 1.0.0
+		 */
+		void addResolved(Dependency dep) {
+			resolved.add(dep);
+		}
+
+		/**
+		 * Gets the dependencies that were resolved by this run
+		 * 
+		 * @return The set of dependencies
+		 * @since 1.0.0
+		 */
+		Set<Dependency> getResolved() {
+			return resolved;
+		}
+
+		/**
+		 * Records that this run depends on a coordinate owned by another run
+		 * 
+		 * @param other
+		 *            The other run
+		 * @since 1.0.0
+		 */
+		void addDependsOn(Resolution other) {
+			if (other != this) {
+				dependsOn.add(other);
+			}
+		}
+
+		/**
+		 * Gets the other runs that this run depends on
+		 * 
+		 * @return The set of runs
+		 * @since 1.0.0
+		 */
+		Set<Resolution> getDependsOn() {
+			return dependsOn;
+		}
+
+		/**
+		 * Marks this run as having finished its own work
+		 * 
+		 * @param failure
+		 *            The error that caused the run to fail, or
+		 *            <code>null</code> if it succeeded
+		 * @since 1.0.0
+		 */
+		void finish(IOException failure) {
+			this.failure = failure;
+			done.countDown();
+		}
+
+		/**
+		 * Waits for this run to finish its own work
+		 * 
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If the run failed or the thread was interrupted
+		 */
+		void await() throws IOException {
+			try {
+				done.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for dependency resolution", ex);
+			}
+			if (failure != null) {
+				throw new IOException("Dependency resolution failed in another thread", failure);
+			}
+		}
+
+		/**
+		 * Creates a new run
+		 * 
+		 * @since 1.0.0
+		 */
+		Resolution() {
+			done = new CountDownLatch(1);
+			resolved = Collections.newSetFromMap(new ConcurrentHashMap<Dependency, Boolean>());
+			dependsOn = Collections.newSetFromMap(new ConcurrentHashMap<Resolution, Boolean>());
+		}
+	}
+
+	/**
+	 * The claim of a run on the version of an artifact that is used in this JVM
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	static final class Claim {
+		/**
+		 * The dependency that was claimed, with its version resolved
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Dependency dependency;
+		/**
+		 * The run that owns the dependency
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Resolution owner;
+
+		/**
+		 * Gets the dependency that was claimed
+		 * 
+		 * @return The dependency, with its version resolved
+		 * @since 1.0.0
+		 */
+		Dependency getDependency() {
+			return dependency;
+		}
+
+		/**
+		 * Gets the run that owns the dependency
+		 * 
+		 * @return The run
+		 * @since 1.0.0
+		 */
+		Resolution getOwner() {
+			return owner;
+		}
+
+		/**
+		 * Creates a new claim
+		 * 
+		 * @param dependency
+		 *            The dependency that was claimed
+		 * @param owner
+		 *            The run that owns the dependency
+		 * @since 1.0.0
+		 */
+		Claim(Dependency dependency, Resolution owner) {
+			this.dependency = dependency;
+			this.owner = owner;
+		}
+	}
+
+	/**
+	 * The claims on each artifact, keyed by <code>groupId:artifactId</code>.
+	 * Only one version of each artifact is claimed, so the classpath never
+	 * contains two versions of the same artifact.
+	 * 
+	 * @since 1.0.0
+	 */
+	private final ConcurrentMap<String, Claim> artifacts;
+
+	/**
+	 * Finds the claim on the artifact of a dependency. Any version of the same
+	 * artifact matches, since only one version can be on the classpath.
+	 * 
+	 * @param dep
+	 *            The dependency to look up
+	 * @return The claim, or <code>null</code> if the artifact has not been
+	 *         claimed
+	 * @since 1.0.0
+	 */
+	Claim find(Dependency dep) {
+		return artifacts.get(dep.getArtifactKey());
+	}
+
+	/**
+	 * Claims a resolved dependency for a run
+	 * 
+	 * @param dep
+	 *            The dependency to claim
+	 * @param owner
+	 *            The run that wants to resolve the dependency
+	 * @return The new claim, or the existing claim on any version of the same
+	 *         artifact
+	 * @since 1.0.0
+	 */
+	Claim claim(Dependency dep, Resolution owner) {
+		Claim claim = new Claim(dep, owner);
+		Claim existing = artifacts.putIfAbsent(dep.getArtifactKey(), claim);
+		return existing == null ? claim : existing;
+	}
+
+	/**
+	 * Registers a dependency that is already available on the classpath
+	 * 
+	 * @param dep
+	 *            The dependency
+	 * @since 1.0.0
+	 */
+	void provide(Dependency dep) {
+		Resolution res = new Resolution();
+		res.finish(null);
+		claim(dep, res);
+	}
+
+	/**
+	 * Removes all of the claims of a failed run, so later runs can retry them
+	 * 
+	 * @param owner
+	 *            The run that failed
+	 * @since 1.0.0
+	 */
+	void release(Resolution owner) {
+		for (Iterator<Claim> it = artifacts.values().iterator(); it.hasNext();) {
+			if (it.next().owner == owner) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Creates a new empty registry
+	 * 
+	 * @since 1.0.0
+	 */
+	ResolutionRegistry() {
+		artifacts = new ConcurrentHashMap<String, Claim>();
+	}
+}
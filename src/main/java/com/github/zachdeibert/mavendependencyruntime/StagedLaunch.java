@@ -0,0 +1,214 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Starts the application as soon as the artifacts that its main class needs
+ * directly have been downloaded, while the rest of the dependencies keep
+ * downloading in the background. A class or resource that is needed before
+ * its jar has been downloaded waits for that download. The artifacts that are
+ * needed right away are listed in the <code>Critical-Dependencies</code>
+ * attribute of the manifest (as <code>groupId:artifactId</code>), and any
+ * artifact that the application had to wait for is recorded in a load profile
+ * so that it is downloaded before the application starts the next time. This
+ * is enabled with the
+ * <code>com.github.zachdeibert.mavendependencyruntime.staged</code> system
+ * property or the <code>MAVEN_DEPENDENCY_RUNTIME_STAGED</code> environment
+ * variable.
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class StagedLaunch {
+	/**
+	 * If the application should be started before all of its dependencies
+	 * have been downloaded
+	 * 
+	 * @since 1.0.0
+	 */
+	static final boolean ENABLED = "true".equals(MavenDependencies.getSetting(
+			"com.github.zachdeibert.mavendependencyruntime.staged", "MAVEN_DEPENDENCY_RUNTIME_STAGED", "false"));
+	/**
+	 * The manifest attribute that lists the artifacts the main class needs
+	 * directly
+	 * 
+	 * @since 1.0.0
+	 */
+	static final String CRITICAL_ATTRIBUTE = "Critical-Dependencies";
+	/**
+	 * The magic number at the start of every load profile
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int MAGIC = 0x4d44524c;
+	/**
+	 * The version of the load profile file format
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int FORMAT_VERSION = 2;
+	/**
+	 * The directory to store the load profiles in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final File DIR = new File(MavenDependencies.CACHE_DIR, "profiles");
+	/**
+	 * The file the load profile of the application is stored in
+	 * 
+	 * @since 1.0.0
+	 */
+	private final File file;
+	/**
+	 * The artifacts that are downloaded before the application starts, keyed
+	 * by <code>groupId:artifactId</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<String> critical;
+	/**
+	 * The artifacts in the load profile that was read
+	 * 
+	 * @since 1.0.0
+	 */
+	private final Set<String> profile;
+
+	/**
+	 * Computes the key that the load profile of an application is stored
+	 * under
+	 * 
+	 * @param mainCls
+	 *            The fully qualified name of the main class of the application
+	 * @return The key
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static String computeKey(String mainCls) throws IOException {
+		return CacheFiles.hash(mainCls);
+	}
+
+	/**
+	 * Reads the load profile of the application into
+	 * {@link StagedLaunch#profile}
+	 * 
+	 * @since 1.0.0
+	 */
+	private void read() {
+		List<String> keys = CacheFiles.read(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryReader<List<String>>() {
+			@Override
+			public List<String> read(DataInputStream in) throws IOException {
+				int count = in.readInt();
+				List<String> list = new ArrayList<String>(count);
+				for (int i = 0; i < count; ++i) {
+					list.add(in.readUTF());
+				}
+				return list;
+			}
+		});
+		if (keys != null) {
+			profile.addAll(keys);
+		}
+	}
+
+	/**
+	 * Writes the load profile of the application, if the application had to
+	 * wait for any artifacts that were not in it yet
+	 * 
+	 * @param blocked
+	 *            The artifacts that the application had to wait for
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private void write(Set<Dependency> blocked) throws IOException {
+		final Set<String> keys = new TreeSet<String>(profile);
+		for (Dependency dep : blocked) {
+			keys.add(dep.getArtifactKey());
+		}
+		if (keys.size() == profile.size()) {
+			return;
+		}
+		CacheFiles.write(file, MAGIC, FORMAT_VERSION, new CacheFiles.BinaryWriter() {
+			@Override
+			public void write(DataOutputStream out) throws IOException {
+				out.writeInt(keys.size());
+				for (String key : keys) {
+					out.writeUTF(key);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks if a dependency has to be downloaded before the application
+	 * starts
+	 * 
+	 * @param dep
+	 *            The dependency
+	 * @return If it is needed right away
+	 * @since 1.0.0
+	 */
+	boolean isCritical(Dependency dep) {
+		return critical.contains(dep.getArtifactKey());
+	}
+
+	/**
+	 * Records the artifacts that the application has to wait for in the load
+	 * profile when the JVM exits
+	 * 
+	 * @param loader
+	 *            The class loader the application is loaded with
+	 * @since 1.0.0
+	 */
+	void watch(final DependencyClassLoader loader) {
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					write(loader.getBlocked());
+				} catch (IOException ex) {
+					if (MavenDependencies.ENABLE_LOGGING) {
+						ex.printStackTrace();
+					}
+				}
+			}
+		}, "maven-dependency-runtime-profile"));
+	}
+
+	/**
+	 * Creates a new staged launch for an application
+	 * 
+	 * @param mainCls
+	 *            The fully qualified name of the main class of the application
+	 * @param attribute
+	 *            The value of the {@link StagedLaunch#CRITICAL_ATTRIBUTE}
+	 *            attribute of the manifest, or <code>null</code> if it is not
+	 *            set
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	StagedLaunch(String mainCls, String attribute) throws IOException {
+		file = new File(DIR, computeKey(mainCls).concat(".profile"));
+		critical = new HashSet<String>();
+		profile = new HashSet<String>();
+		read();
+		critical.addAll(profile);
+		if (attribute != null) {
+			for (String key : attribute.trim().split("[\\s,]+")) {
+				if (!key.isEmpty()) {
+					critical.add(key);
+				}
+			}
+		}
+	}
+}
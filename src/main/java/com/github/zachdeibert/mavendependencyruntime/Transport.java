@@ -0,0 +1,76 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * The transport that is used to fetch files from remote repositories
+ * 
+ * @author Zach Deibert
+ * @see Repository#setTransport(Transport)
+ * @since 1.0.0
+ */
+public interface Transport {
+	/**
+	 * The name of the header containing the entity tag of a response
+	 * 
+	 * @since 1.0.0
+	 */
+	String ETAG = "ETag";
+	/**
+	 * The name of the header containing the modification time of a response
+	 * 
+	 * @since 1.0.0
+	 */
+	String LAST_MODIFIED = "Last-Modified";
+
+	/**
+	 * Opens a stream to read a remote file
+	 * 
+	 * @param url
+	 *            The url of the file
+	 * @return The stream containing the contents of the file, which must be
+	 *         closed by the caller
+	 * @since 1.0.0
+	 * @throws java.io.FileNotFoundException
+	 *             If the file does not exist
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	InputStream openStream(URL url) throws IOException;
+
+	/**
+	 * Opens a stream to read a remote file only if it has changed since it was
+	 * last fetched
+	 * 
+	 * @param url
+	 *            The url of the file
+	 * @param validators
+	 *            The <code>ETag</code> and <code>Last-Modified</code> headers
+	 *            of the last response, keyed by header name. It is updated with
+	 *            the headers of the new response if the file has changed.
+	 * @return The stream containing the contents of the file, which must be
+	 *         closed by the caller, or <code>null</code> if the file has not
+	 *         changed
+	 * @since 1.0.0
+	 * @throws java.io.FileNotFoundException
+	 *             If the file does not exist
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	InputStream openStreamIfModified(URL url, Map<String, String> validators) throws IOException;
+
+	/**
+	 * Opens a connection to a server ahead of time, so that later requests to
+	 * it do not have to wait for the connection to be set up
+	 * 
+	 * @param url
+	 *            A url on the server to connect to
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	void warmUp(URL url) throws IOException;
+}
@@ -0,0 +1,105 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+/**
+ * A Maven-style policy for how often cached repository metadata should be
+ * checked for updates
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class UpdatePolicy {
+	/**
+	 * The number of milliseconds in a minute
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final long MINUTE = 60 * 1000;
+	/**
+	 * The policy that is used when none is configured
+	 * 
+	 * @since 1.0.0
+	 */
+	static final UpdatePolicy DEFAULT = parse(
+			System.getProperty("com.github.zachdeibert.mavendependencyruntime.updatePolicy", "daily"));
+	/**
+	 * The policy as it was written in the configuration
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String name;
+	/**
+	 * The number of minutes between checks, <code>0</code> to always check, or
+	 * <code>-1</code> to never check once the metadata is cached
+	 * 
+	 * @since 1.0.0
+	 */
+	private final long interval;
+
+	/**
+	 * Parses an update policy
+	 * 
+	 * @param policy
+	 *            The policy, which is one of <code>always</code>,
+	 *            <code>daily</code>, <code>interval:N</code> (where N is a
+	 *            number of minutes) or <code>never</code>
+	 * @return The parsed policy, or {@link UpdatePolicy#DEFAULT} if the policy
+	 *         is not recognized
+	 * @since 1.0.0
+	 */
+	static UpdatePolicy parse(String policy) {
+		String trimmed = policy == null ? "" : policy.trim().toLowerCase();
+		if (trimmed.equals("always")) {
+			return new UpdatePolicy(trimmed, 0);
+		} else if (trimmed.equals("daily")) {
+			return new UpdatePolicy(trimmed, 24 * 60);
+		} else if (trimmed.equals("never")) {
+			return new UpdatePolicy(trimmed, -1);
+		} else if (trimmed.startsWith("interval:")) {
+			try {
+				return new UpdatePolicy(trimmed, Long.parseLong(trimmed.substring("interval:".length())));
+			} catch (NumberFormatException ex) {
+			}
+		}
+		return DEFAULT == null ? new UpdatePolicy("daily", 24 * 60) : DEFAULT;
+	}
+
+	/**
+	 * Checks if cached metadata needs to be checked for updates
+	 * 
+	 * @param lastChecked
+	 *            The time the metadata was last checked, in milliseconds
+	 *            since the epoch
+	 * @param now
+	 *            The current time, in milliseconds since the epoch
+	 * @return If the metadata should be checked for updates
+	 * @since 1.0.0
+	 */
+	boolean isUpdateRequired(long lastChecked, long now) {
+		if (interval < 0) {
+			return false;
+		} else if (interval == 0 || lastChecked > now) {
+			return true;
+		} else {
+			return now - lastChecked >= interval * MINUTE;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+	/**
+	 * Creates a new update policy
+	 * 
+	 * @param name
+	 *            The policy as it was written in the configuration
+	 * @param interval
+	 *            The number of minutes between checks
+	 * @since 1.0.0
+	 */
+	private UpdatePolicy(String name, long interval) {
+		this.name = name;
+		this.interval = interval;
+	}
+}
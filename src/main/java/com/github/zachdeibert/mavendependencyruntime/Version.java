@@ -1,22 +1,105 @@
 package com.github.zachdeibert.mavendependencyruntime;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * Represents a version parsed into its components
+ * Represents a version parsed into its components, ordered the same way as
+ * the <code>ComparableVersion</code> of Maven 3.9 (where a qualifier after a
+ * <code>.</code> starts a sub-list just like one after a <code>-</code>, so
+ * <code>2.0.0.Beta1</code> sorts before <code>2.0-RC2</code>). The components are encoded into
+ * primitive arrays when the version is created, so comparing two versions does
+ * not allocate anything.
  * 
  * @author Zach Deibert
  * @since 1.0.0
  */
 public class Version implements Comparable<Version> {
 	/**
-	 * A list of the components of the version
+	 * The kind of a numeric component
 	 * 
 	 * @since 1.0.0
 	 */
-	private final List<Integer> parts;
+	private static final byte INT = 0;
+	/**
+	 * The kind of a qualifier component
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final byte STRING = 1;
+	/**
+	 * The kind of a sub-list of components (started by a <code>-</code> or a
+	 * change between digits and letters)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final byte LIST = 2;
+	/**
+	 * The qualifiers that Maven knows about, in the order they sort in
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final List<String> QUALIFIERS = Arrays.asList("alpha", "beta", "milestone", "rc", "snapshot", "",
+			"sp");
+	/**
+	 * The rank of a release (a version without a qualifier)
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int RELEASE = QUALIFIERS.indexOf("");
+	/**
+	 * The rank of all qualifiers that Maven does not know about, which sort
+	 * after all of the known ones
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int UNKNOWN = QUALIFIERS.size();
+	/**
+	 * The most digits that a numeric component can have to be stored as a
+	 * number. Longer numbers are stored as their digits, like Maven stores
+	 * them as <code>BigInteger</code>s.
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final int MAX_DIGITS = 18;
+	/**
+	 * The versions that have already been parsed, so that repeated version
+	 * strings share one instance
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final ConcurrentMap<String, Version> INTERNED = new ConcurrentHashMap<String, Version>();
+	/**
+	 * The kind of each component, in depth-first order
+	 * 
+	 * @since 1.0.0
+	 */
+	private final byte[] kinds;
+	/**
+	 * The value of each component: the number for numeric components, the
+	 * rank for qualifiers and the index after the last child for sub-lists
+	 * 
+	 * @since 1.0.0
+	 */
+	private final long[] values;
+	/**
+	 * The text of each qualifier that Maven does not know about, the digits of
+	 * each number that is too long to be stored as a number, or
+	 * <code>null</code> for all other components
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String[] qualifiers;
+	/**
+	 * The hash code of the canonical form of the version
+	 * 
+	 * @since 1.0.0
+	 */
+	private final int hash;
 	/**
 	 * The version as a string
 	 * 
@@ -24,16 +107,154 @@ public class Version implements Comparable<Version> {
 	 */
 	private final String version;
 
-	public int compareTo(Version o) {
-		Iterator<Integer> us = parts.iterator();
-		Iterator<Integer> them = o.parts.iterator();
-		while (us.hasNext() && them.hasNext()) {
-			int diff = us.next().compareTo(them.next());
+	/**
+	 * Gets the index of the component after a component and all of its
+	 * children
+	 * 
+	 * @param i
+	 *            The index of the component
+	 * @return The index of the next component
+	 * @since 1.0.0
+	 */
+	private int next(int i) {
+		return kinds[i] == LIST ? (int) values[i] : i + 1;
+	}
+
+	/**
+	 * Compares a component to a missing component, which is treated as zero
+	 * or a release
+	 * 
+	 * @param i
+	 *            The index of the component
+	 * @return The result of the comparison
+	 * @since 1.0.0
+	 */
+	private int compareToNull(int i) {
+		switch (kinds[i]) {
+		case INT:
+			return values[i] == 0 ? 0 : 1;
+		case STRING:
+			return values[i] < RELEASE ? -1 : values[i] == RELEASE ? 0 : 1;
+		default:
+			for (int j = i + 1; j < values[i]; j = next(j)) {
+				int diff = compareToNull(j);
+				if (diff != 0) {
+					return diff;
+				}
+			}
+			return 0;
+		}
+	}
+
+	/**
+	 * Compares two lists of components
+	 * 
+	 * @param us
+	 *            The index of the first component in this version
+	 * @param usEnd
+	 *            The index after the last component in this version
+	 * @param o
+	 *            The other version
+	 * @param them
+	 *            The index of the first component in the other version
+	 * @param themEnd
+	 *            The index after the last component in the other version
+	 * @return The result of the comparison
+	 * @since 1.0.0
+	 */
+	private int compareLists(int us, int usEnd, Version o, int them, int themEnd) {
+		while (us < usEnd || them < themEnd) {
+			int diff;
+			if (us >= usEnd) {
+				diff = -o.compareToNull(them);
+			} else if (them >= themEnd) {
+				diff = compareToNull(us);
+			} else {
+				diff = compareItems(us, o, them);
+			}
 			if (diff != 0) {
 				return diff;
 			}
+			if (us < usEnd) {
+				us = next(us);
+			}
+			if (them < themEnd) {
+				them = o.next(them);
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compares two components
+	 * 
+	 * @param us
+	 *            The index of the component in this version
+	 * @param o
+	 *            The other version
+	 * @param them
+	 *            The index of the component in the other version
+	 * @return The result of the comparison
+	 * @since 1.0.0
+	 */
+	private int compareItems(int us, Version o, int them) {
+		byte kind = kinds[us];
+		byte other = o.kinds[them];
+		if (kind != other) {
+			if (kind == INT) {
+				return 1;
+			} else if (other == INT) {
+				return -1;
+			} else {
+				return kind == LIST ? 1 : -1;
+			}
+		}
+		switch (kind) {
+		case INT:
+			if (values[us] != o.values[them]) {
+				return values[us] < o.values[them] ? -1 : 1;
+			} else if (qualifiers[us] != null) {
+				// both are too long to be stored as numbers
+				int diff = qualifiers[us].length() - o.qualifiers[them].length();
+				return diff != 0 ? diff : qualifiers[us].compareTo(o.qualifiers[them]);
+			} else {
+				return 0;
+			}
+		case STRING:
+			if (values[us] != o.values[them]) {
+				return values[us] < o.values[them] ? -1 : 1;
+			} else if (values[us] == UNKNOWN) {
+				return qualifiers[us].compareTo(o.qualifiers[them]);
+			} else {
+				return 0;
+			}
+		default:
+			return compareLists(us + 1, (int) values[us], o, them + 1, (int) o.values[them]);
 		}
-		return us.hasNext() ? 1 : them.hasNext() ? -1 : 0;
+	}
+
+	public int compareTo(Version o) {
+		if (this == o) {
+			return 0;
+		}
+		return compareLists(0, kinds.length, o, 0, o.kinds.length);
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof Version)) {
+			return false;
+		}
+		Version other = (Version) obj;
+		return hash == other.hash && compareTo(other) == 0;
 	}
 
 	@Override
@@ -42,19 +263,269 @@ public class Version implements Comparable<Version> {
 	}
 
 	/**
-	 * Creates a new version
+	 * Gets the version for a string, reusing the instance from an earlier call
+	 * if the same string has been parsed before
+	 * 
+	 * @param version
+	 *            The version string to parse
+	 * @return The version
+	 * @since 1.0.0
+	 */
+	public static Version valueOf(String version) {
+		Version ver = INTERNED.get(version);
+		if (ver == null) {
+			ver = new Version(version);
+			Version existing = INTERNED.putIfAbsent(version, ver);
+			if (existing != null) {
+				ver = existing;
+			}
+		}
+		return ver;
+	}
+
+	/**
+	 * Parses a single component
+	 * 
+	 * @param digit
+	 *            If the component is made of digits
+	 * @param followedByDigit
+	 *            If the component is directly followed by a digit
+	 * @param text
+	 *            The text of the component
+	 * @return A {@link Long} for numeric components, a {@link StringBuilder}
+	 *         of the digits for numeric components that are too long, or a
+	 *         {@link String} for qualifiers
+	 * @since 1.0.0
+	 */
+	private static Object parseItem(boolean digit, boolean followedByDigit, String text) {
+		if (digit) {
+			int zeros = 0;
+			while (zeros < text.length() - 1 && text.charAt(zeros) == '0') {
+				++zeros;
+			}
+			if (text.length() - zeros > MAX_DIGITS) {
+				return new StringBuilder(text.substring(zeros));
+			}
+			return Long.valueOf(text);
+		}
+		if (followedByDigit && text.length() == 1) {
+			switch (text.charAt(0)) {
+			case 'a':
+				return "alpha";
+			case 'b':
+				return "beta";
+			case 'm':
+				return "milestone";
+			}
+		}
+		if (text.equals("ga") || text.equals("final") || text.equals("release")) {
+			return "";
+		} else if (text.equals("cr")) {
+			return "rc";
+		}
+		return text;
+	}
+
+	/**
+	 * Checks if a parsed component is equivalent to a missing component
+	 * 
+	 * @param item
+	 *            The component
+	 * @return If the component can be dropped from the end of a list
+	 * @since 1.0.0
+	 */
+	private static boolean isNull(Object item) {
+		if (item instanceof Long) {
+			return ((Long) item).longValue() == 0;
+		} else if (item instanceof StringBuilder) {
+			return false;
+		} else if (item instanceof String) {
+			return ((String) item).isEmpty();
+		} else {
+			return ((List<?>) item).isEmpty();
+		}
+	}
+
+	/**
+	 * Removes the trailing components of a list that are equivalent to
+	 * missing components, so that <code>1.0.0</code> equals <code>1</code>
+	 * 
+	 * @param list
+	 *            The list to normalize
+	 * @since 1.0.0
+	 */
+	private static void normalize(List<Object> list) {
+		for (int i = list.size() - 1; i >= 0; --i) {
+			Object item = list.get(i);
+			if (isNull(item)) {
+				list.remove(i);
+			} else if (!(item instanceof List)) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Counts the components in a parsed list and all of its sub-lists
+	 * 
+	 * @param list
+	 *            The list
+	 * @return The number of components
+	 * @since 1.0.0
+	 */
+	private static int count(List<?> list) {
+		int count = list.size();
+		for (Object item : list) {
+			if (item instanceof List) {
+				count += count((List<?>) item);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Encodes a parsed list into the primitive arrays of this version
+	 * 
+	 * @param list
+	 *            The list
+	 * @param i
+	 *            The index to start writing at
+	 * @return The index after the last component that was written
+	 * @since 1.0.0
+	 */
+	private int encode(List<?> list, int i) {
+		for (Object item : list) {
+			if (item instanceof Long) {
+				kinds[i] = INT;
+				values[i++] = ((Long) item).longValue();
+			} else if (item instanceof StringBuilder) {
+				kinds[i] = INT;
+				values[i] = Long.MAX_VALUE;
+				qualifiers[i++] = item.toString();
+			} else if (item instanceof String) {
+				int rank = QUALIFIERS.indexOf(item);
+				kinds[i] = STRING;
+				if (rank < 0) {
+					values[i] = UNKNOWN;
+					qualifiers[i] = (String) item;
+				} else {
+					values[i] = rank;
+				}
+				++i;
+			} else {
+				int start = i;
+				kinds[start] = LIST;
+				i = encode((List<?>) item, i + 1);
+				values[start] = i;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Computes the hash code of a list of components, ignoring trailing
+	 * components that compare equal to missing components
+	 * 
+	 * @param start
+	 *            The index of the first component
+	 * @param end
+	 *            The index after the last component
+	 * @return The hash code
+	 * @since 1.0.0
+	 */
+	private int hash(int start, int end) {
+		int hash = 1;
+		int pending = 1;
+		for (int i = start; i < end; i = next(i)) {
+			pending = 31 * pending + kinds[i];
+			if (kinds[i] == LIST) {
+				pending = 31 * pending + hash(i + 1, (int) values[i]);
+			} else if (qualifiers[i] != null) {
+				pending = 31 * pending + qualifiers[i].hashCode();
+			} else {
+				pending = 31 * pending + (int) (values[i] ^ (values[i] >>> 32));
+			}
+			if (compareToNull(i) != 0) {
+				hash = pending;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Creates a new version. Prefer {@link Version#valueOf(String)}, which
+	 * reuses instances for repeated version strings.
 	 * 
 	 * @param version
 	 *            The version string to parse
 	 * @since 1.0.0
 	 */
 	public Version(String version) {
-		parts = new ArrayList<Integer>();
-		for (String part : version.split("[^0-9]")) {
-			if (!part.isEmpty()) {
-				parts.add(Integer.parseInt(part));
+		String text = version.toLowerCase(Locale.ENGLISH);
+		List<Object> root = new ArrayList<Object>();
+		List<List<Object>> stack = new ArrayList<List<Object>>();
+		List<Object> list = root;
+		stack.add(list);
+		boolean digit = false;
+		int start = 0;
+		for (int i = 0; i < text.length(); ++i) {
+			char c = text.charAt(i);
+			if (c == '.' || c == '-') {
+				list.add(i == start ? Long.valueOf(0) : parseItem(digit, false, text.substring(start, i)));
+				start = i + 1;
+				if (c == '-') {
+					List<Object> sub = new ArrayList<Object>();
+					list.add(sub);
+					list = sub;
+					stack.add(list);
+				}
+			} else if (Character.isDigit(c)) {
+				if (!digit && i > start) {
+					// a qualifier after a '.' starts a sub-list, like after a '-'
+					if (!list.isEmpty()) {
+						List<Object> sub = new ArrayList<Object>();
+						list.add(sub);
+						list = sub;
+						stack.add(list);
+					}
+					list.add(parseItem(false, true, text.substring(start, i)));
+					start = i;
+					List<Object> sub = new ArrayList<Object>();
+					list.add(sub);
+					list = sub;
+					stack.add(list);
+				}
+				digit = true;
+			} else {
+				if (digit && i > start) {
+					list.add(parseItem(true, false, text.substring(start, i)));
+					start = i;
+					List<Object> sub = new ArrayList<Object>();
+					list.add(sub);
+					list = sub;
+					stack.add(list);
+				}
+				digit = false;
+			}
+		}
+		if (text.length() > start) {
+			if (!digit && !list.isEmpty()) {
+				List<Object> sub = new ArrayList<Object>();
+				list.add(sub);
+				list = sub;
+				stack.add(list);
 			}
+			list.add(parseItem(digit, false, text.substring(start)));
+		}
+		for (int i = stack.size() - 1; i >= 0; --i) {
+			normalize(stack.get(i));
 		}
+		int size = count(root);
+		kinds = new byte[size];
+		values = new long[size];
+		qualifiers = new String[size];
+		encode(root, 0);
+		hash = hash(0, size);
 		this.version = version;
 	}
 }
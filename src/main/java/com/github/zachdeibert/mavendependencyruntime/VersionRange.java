@@ -0,0 +1,262 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A Maven version range, such as <code>[1.2,2.0)</code> or the union
+ * <code>(,1.0],[1.2,)</code>
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+final class VersionRange {
+	/**
+	 * A single interval of versions in a range
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class Restriction {
+		/**
+		 * The lower bound, or <code>null</code> if there is no lower bound
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Version lower;
+		/**
+		 * If the lower bound is part of the interval
+		 * 
+		 * @since 1.0.0
+		 */
+		private final boolean lowerInclusive;
+		/**
+		 * The upper bound, or <code>null</code> if there is no upper bound
+		 * 
+		 * @since 1.0.0
+		 */
+		private final Version upper;
+		/**
+		 * If the upper bound is part of the interval
+		 * 
+		 * @since 1.0.0
+		 */
+		private final boolean upperInclusive;
+
+		/**
+		 * Checks if a version is in this interval
+		 * 
+		 * @param version
+		 *            The version to check
+		 * @return If the version is in the interval
+		 * @since 1.0.0
+		 */
+		boolean contains(Version version) {
+			if (lower != null) {
+				int diff = version.compareTo(lower);
+				if (diff < 0 || (diff == 0 && !lowerInclusive)) {
+					return false;
+				}
+			}
+			if (upper != null) {
+				int diff = version.compareTo(upper);
+				if (diff > 0 || (diff == 0 && !upperInclusive)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Creates a new interval
+		 * 
+		 * @param lower
+		 *            The lower bound, or <code>null</code> if there is no lower
+		 *            bound
+		 * @param lowerInclusive
+		 *            If the lower bound is part of the interval
+		 * @param upper
+		 *            The upper bound, or <code>null</code> if there is no upper
+		 *            bound
+		 * @param upperInclusive
+		 *            If the upper bound is part of the interval
+		 * @since 1.0.0
+		 */
+		Restriction(Version lower, boolean lowerInclusive, Version upper, boolean upperInclusive) {
+			this.lower = lower;
+			this.lowerInclusive = lowerInclusive;
+			this.upper = upper;
+			this.upperInclusive = upperInclusive;
+		}
+	}
+
+	/**
+	 * The intervals that make up this range
+	 * 
+	 * @since 1.0.0
+	 */
+	private final List<Restriction> restrictions;
+	/**
+	 * The text of the range as it was written in the pom
+	 * 
+	 * @since 1.0.0
+	 */
+	private final String spec;
+
+	/**
+	 * Checks if a string is a version range rather than a single (soft)
+	 * version
+	 * 
+	 * @param spec
+	 *            The version string
+	 * @return If the string is a range
+	 * @since 1.0.0
+	 */
+	static boolean isRange(String spec) {
+		return spec.indexOf('[') >= 0 || spec.indexOf('(') >= 0;
+	}
+
+	/**
+	 * Checks if a version is in this range
+	 * 
+	 * @param version
+	 *            The version to check
+	 * @return If the version is in the range
+	 * @since 1.0.0
+	 */
+	boolean contains(Version version) {
+		for (Restriction restriction : restrictions) {
+			if (restriction.contains(version)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the version that this range requires exactly, such as
+	 * <code>1.0</code> for <code>[1.0]</code>
+	 * 
+	 * @return The version, or <code>null</code> if this range allows more than
+	 *         one version
+	 * @since 1.0.0
+	 */
+	Version getExactVersion() {
+		if (restrictions.size() == 1) {
+			Restriction restriction = restrictions.get(0);
+			if (restriction.lower != null && restriction.lower == restriction.upper) {
+				return restriction.lower;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Selects the highest version in this range from a list of candidates
+	 * 
+	 * @param candidates
+	 *            The versions to choose from
+	 * @return The highest version that is in this range, or <code>null</code>
+	 *         if none of them are
+	 * @since 1.0.0
+	 */
+	Version select(Iterable<Version> candidates) {
+		Version max = null;
+		for (Version ver : candidates) {
+			if (contains(ver) && (max == null || ver.compareTo(max) > 0)) {
+				max = ver;
+			}
+		}
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return spec;
+	}
+
+	/**
+	 * Parses a single interval of a range
+	 * 
+	 * @param spec
+	 *            The text of the interval, including its brackets
+	 * @return The interval
+	 * @since 1.0.0
+	 * @throws IllegalArgumentException
+	 *             If the interval is not valid
+	 */
+	private static Restriction parseRestriction(String spec) {
+		boolean lowerInclusive = spec.charAt(0) == '[';
+		boolean upperInclusive = spec.charAt(spec.length() - 1) == ']';
+		String body = spec.substring(1, spec.length() - 1).trim();
+		int comma = body.indexOf(',');
+		if (comma < 0) {
+			if (!lowerInclusive || !upperInclusive || body.isEmpty()) {
+				throw new IllegalArgumentException(String.format("Invalid version range '%s'", spec));
+			}
+			Version version = Version.valueOf(body);
+			return new Restriction(version, true, version, true);
+		}
+		String lower = body.substring(0, comma).trim();
+		String upper = body.substring(comma + 1).trim();
+		Restriction restriction = new Restriction(lower.isEmpty() ? null : Version.valueOf(lower), lowerInclusive,
+				upper.isEmpty() ? null : Version.valueOf(upper), upperInclusive);
+		if (restriction.lower != null && restriction.upper != null
+				&& restriction.lower.compareTo(restriction.upper) > 0) {
+			throw new IllegalArgumentException(String.format("Invalid version range '%s'", spec));
+		}
+		return restriction;
+	}
+
+	/**
+	 * Parses a version range
+	 * 
+	 * @param spec
+	 *            The text of the range
+	 * @return The range
+	 * @since 1.0.0
+	 * @throws IllegalArgumentException
+	 *             If the range is not valid
+	 */
+	static VersionRange parse(String spec) {
+		List<Restriction> restrictions = new ArrayList<Restriction>();
+		int pos = 0;
+		while (pos < spec.length()) {
+			char c = spec.charAt(pos);
+			if (c == ',' || Character.isWhitespace(c)) {
+				++pos;
+			} else if (c == '[' || c == '(') {
+				int end = pos + 1;
+				while (end < spec.length() && spec.charAt(end) != ']' && spec.charAt(end) != ')') {
+					++end;
+				}
+				if (end == spec.length()) {
+					throw new IllegalArgumentException(String.format("Unbounded version range '%s'", spec));
+				}
+				restrictions.add(parseRestriction(spec.substring(pos, end + 1)));
+				pos = end + 1;
+			} else {
+				throw new IllegalArgumentException(String.format("Invalid version range '%s'", spec));
+			}
+		}
+		if (restrictions.isEmpty()) {
+			throw new IllegalArgumentException(String.format("Empty version range '%s'", spec));
+		}
+		return new VersionRange(spec, restrictions);
+	}
+
+	/**
+	 * Creates a new range
+	 * 
+	 * @param spec
+	 *            The text of the range
+	 * @param restrictions
+	 *            The intervals that make up the range
+	 * @since 1.0.0
+	 */
+	private VersionRange(String spec, List<Restriction> restrictions) {
+		this.spec = spec;
+		this.restrictions = Collections.unmodifiableList(restrictions);
+	}
+}
@@ -0,0 +1,207 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests listing folders on the classpath with {@link ClassPathScanner}
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class ClassPathScannerTest {
+	/**
+	 * The folder to create the classpath in
+	 * 
+	 * @since 1.0.0
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A class loader that jars can be added to after it is created
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class GrowingClassLoader extends URLClassLoader {
+		/**
+		 * Creates a new class loader with an empty classpath
+		 * 
+		 * @since 1.0.0
+		 */
+		GrowingClassLoader() {
+			super(new URL[0], null);
+		}
+
+		@Override
+		public void addURL(URL url) {
+			super.addURL(url);
+		}
+	}
+
+	/**
+	 * A class loader that finds resources in a jar without listing it in its
+	 * urls
+	 * 
+	 * @author Zach Deibert
+	 * @since 1.0.0
+	 */
+	private static final class HiddenClassLoader extends ClassLoader {
+		/**
+		 * The class loader that the resources are found with
+		 * 
+		 * @since 1.0.0
+		 */
+		private final URLClassLoader hidden;
+		/**
+		 * The number of times that resources have been looked up
+		 * 
+		 * @since 1.0.0
+		 */
+		private int lookups;
+
+		@Override
+		public Enumeration<URL> getResources(String name) throws IOException {
+			++lookups;
+			return hidden.getResources(name);
+		}
+
+		/**
+		 * Creates a new class loader
+		 * 
+		 * @param jar
+		 *            The jar to find resources in
+		 * @since 1.0.0
+		 * @throws IOException
+		 *             If the url of the jar could not be created
+		 */
+		HiddenClassLoader(File jar) throws IOException {
+			super(null);
+			hidden = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+		}
+	}
+
+	/**
+	 * Creates a jar
+	 * 
+	 * @param name
+	 *            The name of the jar
+	 * @param entries
+	 *            The names of the files in the jar
+	 * @return The jar
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the jar could not be written
+	 */
+	private File createJar(String name, String... entries) throws IOException {
+		File jar = folder.newFile(name);
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			for (String entry : entries) {
+				out.putNextEntry(new JarEntry(entry));
+				out.closeEntry();
+			}
+		} finally {
+			out.close();
+		}
+		return jar;
+	}
+
+	/**
+	 * Lists a folder
+	 * 
+	 * @param dir
+	 *            The folder
+	 * @param cl
+	 *            The class loader
+	 * @return The names of the resources in the folder
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static Set<String> list(String dir, ClassLoader cl) throws IOException {
+		return new HashSet<String>(Arrays.asList(ClassPathScanner.listResources(dir, cl)));
+	}
+
+	/**
+	 * Tests that the folders of jars and directories are listed, and that a
+	 * jar that is added to the class loader later is found
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testAddedJar() throws IOException {
+		File dir = folder.newFolder("classes");
+		new File(dir, "res").mkdirs();
+		new File(dir, "res/c.txt").createNewFile();
+		GrowingClassLoader cl = new GrowingClassLoader();
+		cl.addURL(createJar("a.jar", "res/a.txt", "res/sub/x.txt").toURI().toURL());
+		cl.addURL(dir.toURI().toURL());
+		assertEquals(new HashSet<String>(Arrays.asList("a.txt", "sub", "c.txt")), list("/res/", cl));
+		cl.addURL(createJar("b.jar", "res/b.txt").toURI().toURL());
+		assertEquals(new HashSet<String>(Arrays.asList("a.txt", "sub", "c.txt", "b.txt")), list("res", cl));
+		new File(dir, "res/d.txt").createNewFile();
+		assertEquals(new HashSet<String>(Arrays.asList("a.txt", "sub", "c.txt", "b.txt", "d.txt")), list("res", cl));
+		cl.close();
+	}
+
+	/**
+	 * Tests that a root that the class loader does not list is found by
+	 * asking it for the folder, and that it is only asked once
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testUnlistedJar() throws IOException {
+		HiddenClassLoader cl = new HiddenClassLoader(createJar("hidden.jar", "res/", "res/h.txt"));
+		assertEquals(Collections.singleton("h.txt"), list("res", cl));
+		assertEquals(Collections.singleton("h.txt"), list("res", cl));
+		assertEquals(1, cl.lookups);
+		cl.hidden.close();
+	}
+
+	/**
+	 * Tests that the packages of a downloaded jar are recorded for its
+	 * artifact, and are only known to be complete for the version that was
+	 * downloaded
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testRecordPackages() throws IOException {
+		Dependency dep = Dependency.valueOf("test.classpathscanner", "packages", "1.0", DependencyScope.COMPILE);
+		ClassPathScanner.recordPackages(dep, createJar("packages.jar", "a/", "a/b/C.class", "res/x.txt", "top.txt"));
+		ClassPathScanner.Packages packages = ClassPathScanner.getPackages(dep);
+		assertTrue(packages.contains("a/b"));
+		assertTrue(packages.contains("res"));
+		assertTrue(packages.contains(""));
+		assertFalse(packages.contains("a"));
+		assertTrue(packages.isOf(dep));
+		assertFalse(packages.isOf(Dependency.valueOf(dep.getGroupId(), dep.getArtifactId(), "2.0", dep.getScope())));
+	}
+}
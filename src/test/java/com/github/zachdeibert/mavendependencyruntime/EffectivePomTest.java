@@ -0,0 +1,165 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests how {@link EffectivePom} merges the managed dependencies of parents
+ * and boms
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class EffectivePomTest {
+	/**
+	 * Parses a pom
+	 * 
+	 * @param xml
+	 *            The contents of the pom
+	 * @return The model of the pom
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the pom could not be parsed
+	 */
+	private static PomModel parse(String xml) throws IOException {
+		return PomModel.parse(new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+	}
+
+	/**
+	 * Gets the version of the only compile dependency of a pom
+	 * 
+	 * @param pom
+	 *            The effective model of the pom
+	 * @return The version
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the dependencies could not be parsed
+	 */
+	private static String getVersion(EffectivePom pom) throws IOException {
+		List<Dependency> deps = pom.getDependencies(Collections.singleton(DependencyScope.COMPILE));
+		assertEquals(1, deps.size());
+		return deps.get(0).getVersion();
+	}
+
+	/**
+	 * The parent pom, which manages <code>t:F</code> with a property
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String PARENT = "<project><groupId>t</groupId><artifactId>P</artifactId><version>1</version>"
+			+ "<packaging>pom</packaging><properties><f.version>1.0</f.version></properties>"
+			+ "<dependencyManagement><dependencies><dependency><groupId>t</groupId><artifactId>F</artifactId>"
+			+ "<version>${f.version}</version></dependency></dependencies></dependencyManagement></project>";
+
+	/**
+	 * Tests that a child that overrides a property changes the version of a
+	 * dependency that is managed by its parent
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If a pom could not be parsed
+	 */
+	@Test
+	public void testParentPropertyOverride() throws IOException {
+		EffectivePom parent = new EffectivePom(parse(PARENT), null, null);
+		EffectivePom child = new EffectivePom(parse("<project><parent><groupId>t</groupId><artifactId>P</artifactId>"
+				+ "<version>1</version></parent><artifactId>C</artifactId>"
+				+ "<properties><f.version>2.0</f.version></properties><dependencies><dependency>"
+				+ "<groupId>t</groupId><artifactId>F</artifactId></dependency></dependencies></project>"), parent,
+				new File("P-1.pom"));
+		assertEquals("2.0", getVersion(child));
+	}
+
+	/**
+	 * Tests that a child that does not override a property gets the version
+	 * from its parent
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If a pom could not be parsed
+	 */
+	@Test
+	public void testParentProperty() throws IOException {
+		EffectivePom parent = new EffectivePom(parse(PARENT), null, null);
+		EffectivePom child = new EffectivePom(parse("<project><parent><groupId>t</groupId><artifactId>P</artifactId>"
+				+ "<version>1</version></parent><artifactId>C</artifactId><dependencies><dependency>"
+				+ "<groupId>t</groupId><artifactId>F</artifactId></dependency></dependencies></project>"), parent,
+				new File("P-1.pom"));
+		assertEquals("1.0", getVersion(child));
+	}
+
+	/**
+	 * Tests that the managed dependencies of a bom are substituted with the
+	 * properties of the bom, not the pom that imports it
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If a pom could not be parsed
+	 */
+	@Test
+	public void testBomProperty() throws IOException {
+		EffectivePom bom = new EffectivePom(parse(PARENT), null, null);
+		EffectivePom pom = new EffectivePom(parse("<project><groupId>t</groupId><artifactId>C</artifactId>"
+				+ "<version>1</version><properties><f.version>2.0</f.version></properties>"
+				+ "<dependencyManagement><dependencies><dependency><groupId>t</groupId><artifactId>P</artifactId>"
+				+ "<version>1</version><type>pom</type><scope>import</scope></dependency></dependencies>"
+				+ "</dependencyManagement><dependencies><dependency><groupId>t</groupId><artifactId>F</artifactId>"
+				+ "</dependency></dependencies></project>"), null, null);
+		pom.importManaged(bom, new File("P-1.pom"));
+		assertEquals("1.0", getVersion(pom));
+	}
+
+	/**
+	 * Tests that the managed dependencies declared in a pom take precedence
+	 * over the ones imported by it
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If a pom could not be parsed
+	 */
+	@Test
+	public void testDeclaredBeforeImported() throws IOException {
+		EffectivePom bom = new EffectivePom(parse(PARENT), null, null);
+		EffectivePom pom = new EffectivePom(parse("<project><groupId>t</groupId><artifactId>C</artifactId>"
+				+ "<version>1</version><dependencyManagement><dependencies><dependency><groupId>t</groupId>"
+				+ "<artifactId>P</artifactId><version>1</version><type>pom</type><scope>import</scope></dependency>"
+				+ "<dependency><groupId>t</groupId><artifactId>F</artifactId><version>3.0</version></dependency>"
+				+ "</dependencies></dependencyManagement><dependencies><dependency><groupId>t</groupId>"
+				+ "<artifactId>F</artifactId></dependency></dependencies></project>"), null, null);
+		pom.importManaged(bom, new File("P-1.pom"));
+		assertEquals("3.0", getVersion(pom));
+	}
+
+	/**
+	 * Tests that a pom whose parent or bom could not be fully loaded is not
+	 * complete
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If a pom could not be parsed
+	 */
+	@Test
+	public void testIncomplete() throws IOException {
+		EffectivePom parent = new EffectivePom(parse(PARENT), null, null);
+		assertTrue(parent.isComplete());
+		parent.markIncomplete();
+		EffectivePom child = new EffectivePom(parse("<project><parent><groupId>t</groupId><artifactId>P</artifactId>"
+				+ "<version>1</version></parent><artifactId>C</artifactId></project>"), parent, new File("P-1.pom"));
+		assertFalse(child.isComplete());
+		EffectivePom pom = new EffectivePom(parse("<project><groupId>t</groupId><artifactId>C</artifactId>"
+				+ "<version>1</version></project>"), null, null);
+		assertTrue(pom.isComplete());
+		pom.importManaged(parent, new File("P-1.pom"));
+		assertFalse(pom.isComplete());
+	}
+}
@@ -0,0 +1,244 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests {@link HttpTransport} against an embedded http server
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class HttpTransportTest {
+	/**
+	 * The body of the file that the server has
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final byte[] BODY = "<project />".getBytes(Charset.forName("UTF-8"));
+	/**
+	 * The entity tag of the file that the server has
+	 * 
+	 * @since 1.0.0
+	 */
+	private static final String ETAG = "\"abc\"";
+	/**
+	 * The embedded server
+	 * 
+	 * @since 1.0.0
+	 */
+	private HttpServer server;
+	/**
+	 * The method of the last request the server received
+	 * 
+	 * @since 1.0.0
+	 */
+	private volatile String lastMethod;
+	/**
+	 * The transport being tested
+	 * 
+	 * @since 1.0.0
+	 */
+	private HttpTransport transport;
+
+	/**
+	 * Gets the url of a path on the embedded server
+	 * 
+	 * @param path
+	 *            The path
+	 * @return The url
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the url is malformed
+	 */
+	private URL url(String path) throws IOException {
+		return new URL(String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path));
+	}
+
+	/**
+	 * Reads all of a stream and closes it
+	 * 
+	 * @param stream
+	 *            The stream
+	 * @return The contents of the stream
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private static byte[] read(InputStream stream) throws IOException {
+		try {
+			return CacheFiles.readFully(stream);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Starts the embedded server
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the server could not be started
+	 */
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				lastMethod = exchange.getRequestMethod();
+				String path = exchange.getRequestURI().getPath();
+				if (path.equals("/file.pom")) {
+					exchange.getResponseHeaders().set(Transport.ETAG, ETAG);
+					if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+						exchange.sendResponseHeaders(304, -1);
+					} else if (exchange.getRequestMethod().equals("HEAD")) {
+						exchange.sendResponseHeaders(200, -1);
+					} else {
+						exchange.sendResponseHeaders(200, BODY.length);
+						OutputStream out = exchange.getResponseBody();
+						out.write(BODY);
+						out.close();
+					}
+				} else {
+					exchange.sendResponseHeaders(404, -1);
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+		transport = new HttpTransport(5000, 5000);
+	}
+
+	/**
+	 * Stops the embedded server
+	 * 
+	 * @since 1.0.0
+	 */
+	@After
+	public void stopServer() {
+		server.stop(0);
+	}
+
+	/**
+	 * Tests that a file is read from the server
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testOpenStream() throws IOException {
+		assertArrayEquals(BODY, read(transport.openStream(url("/file.pom"))));
+		assertArrayEquals(BODY, read(transport.openStream(url("/file.pom"))));
+	}
+
+	/**
+	 * Tests that a missing file is reported as not found
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test(expected = FileNotFoundException.class)
+	public void testMissingFile() throws IOException {
+		transport.openStream(url("/missing.pom"));
+	}
+
+	/**
+	 * Tests that a conditional request saves the validators of the response and
+	 * sends them the next time
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testOpenStreamIfModified() throws IOException {
+		Map<String, String> validators = new HashMap<String, String>();
+		assertArrayEquals(BODY, read(transport.openStreamIfModified(url("/file.pom"), validators)));
+		assertEquals(ETAG, validators.get(Transport.ETAG));
+		assertNull(transport.openStreamIfModified(url("/file.pom"), validators));
+		assertEquals(ETAG, validators.get(Transport.ETAG));
+	}
+
+	/**
+	 * Tests that warming up a connection only asks for the headers
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testWarmUp() throws IOException {
+		transport.warmUp(url("/file.pom"));
+		assertEquals("HEAD", lastMethod);
+	}
+
+	/**
+	 * Tests that closing a stream early does not read the whole rest of a
+	 * large response
+	 * 
+	 * @since 1.0.0
+	 */
+	@Test
+	public void testDrainIsCapped() {
+		final long[] read = new long[1];
+		final boolean[] closed = new boolean[1];
+		HttpTransport.drain(new InputStream() {
+			@Override
+			public int read() {
+				++read[0];
+				return 0;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				read[0] += len;
+				return len;
+			}
+
+			@Override
+			public void close() {
+				closed[0] = true;
+			}
+		});
+		assertTrue(read[0] <= HttpTransport.MAX_DRAIN);
+		assertTrue(closed[0]);
+	}
+
+	/**
+	 * Tests that the keep-alive settings of the JVM are left alone unless they
+	 * are configured
+	 * 
+	 * @since 1.0.0
+	 */
+	@Test
+	public void testMaxConnectionsIsOptIn() {
+		Assume.assumeTrue(System.getProperty("com.github.zachdeibert.mavendependencyruntime.maxConnections") == null
+				&& System.getenv("MAVEN_DEPENDENCY_RUNTIME_MAX_CONNECTIONS") == null);
+		assertNull(System.getProperty("http.maxConnections"));
+	}
+}
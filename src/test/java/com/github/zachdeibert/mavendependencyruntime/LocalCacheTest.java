@@ -0,0 +1,113 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests looking up artifacts in the tiers of a {@link LocalCache}
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class LocalCacheTest {
+	/**
+	 * The folder to create the tiers in
+	 * 
+	 * @since 1.0.0
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	/**
+	 * The writable tier
+	 * 
+	 * @since 1.0.0
+	 */
+	private File writable;
+	/**
+	 * The read-only tier
+	 * 
+	 * @since 1.0.0
+	 */
+	private File readOnly;
+	/**
+	 * The cache being tested
+	 * 
+	 * @since 1.0.0
+	 */
+	private LocalCache cache;
+
+	/**
+	 * Creates the tiers
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the tiers could not be created
+	 */
+	@Before
+	public void createTiers() throws IOException {
+		writable = folder.newFolder("writable");
+		readOnly = folder.newFolder("read-only");
+		cache = new LocalCache(writable, Collections.singletonList(readOnly), true);
+	}
+
+	/**
+	 * Installs an artifact into the read-only tier
+	 * 
+	 * @param dep
+	 *            The artifact
+	 * @return The file of the artifact
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the file could not be created
+	 */
+	private File install(Dependency dep) throws IOException {
+		File file = dep.getFile(readOnly, "jar");
+		file.getParentFile().mkdirs();
+		assertTrue(file.createNewFile());
+		return file;
+	}
+
+	/**
+	 * Tests that looking up an artifact does not link it into the writable
+	 * tier, but using it does
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testLinkOnlyWhenUsed() throws IOException {
+		Dependency dep = Dependency.valueOf("t", "a", "1.0", DependencyScope.COMPILE);
+		File installed = install(dep);
+		assertEquals(installed, cache.locate(dep, "jar"));
+		assertFalse(dep.getFile(writable, "jar").exists());
+		assertEquals(dep.getFile(writable, "jar"), cache.use(dep, "jar"));
+		assertTrue(dep.getFile(writable, "jar").exists());
+	}
+
+	/**
+	 * Tests that snapshot versions are used from the read-only tier without
+	 * being linked
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	@Test
+	public void testSnapshotIsNotLinked() throws IOException {
+		Dependency dep = Dependency.valueOf("t", "a", "1.0-SNAPSHOT", DependencyScope.COMPILE);
+		File installed = install(dep);
+		assertEquals(installed, cache.use(dep, "jar"));
+		assertFalse(dep.getFile(writable, "jar").exists());
+	}
+}
@@ -0,0 +1,44 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests reading poms into a {@link PomModel}
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class PomModelTest {
+	/**
+	 * Tests that only an explicit <code>*</code> is a wildcard in an
+	 * exclusion, and that exclusions with a missing or empty field are ignored
+	 * 
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If the pom could not be parsed
+	 */
+	@Test
+	public void testExclusions() throws IOException {
+		String xml = "<project><groupId>t</groupId><artifactId>C</artifactId><version>1</version><dependencies>"
+				+ "<dependency><groupId>t</groupId><artifactId>D</artifactId><version>1</version><exclusions>"
+				+ "<exclusion><groupId>g</groupId><artifactId>a</artifactId></exclusion>"
+				+ "<exclusion><groupId>*</groupId><artifactId>b</artifactId></exclusion>"
+				+ "<exclusion><groupId>g</groupId></exclusion>"
+				+ "<exclusion><artifactId>a</artifactId></exclusion>"
+				+ "<exclusion><groupId> </groupId><artifactId>a</artifactId></exclusion>"
+				+ "<exclusion></exclusion>"
+				+ "</exclusions></dependency></dependencies></project>";
+		PomModel model = PomModel.parse(new ByteArrayInputStream(xml.getBytes(Charset.forName("UTF-8"))));
+		List<PomModel.DependencyModel> deps = model.getDependencies();
+		assertEquals(1, deps.size());
+		assertEquals(Arrays.asList("g:a", "*:b"), deps.get(0).getExclusions());
+	}
+}
@@ -0,0 +1,131 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests running premains with {@link PremainSchedule}
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class PremainScheduleTest {
+	/**
+	 * The folder to compile the classes in
+	 * 
+	 * @since 1.0.0
+	 */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Compiles classes into a folder
+	 * 
+	 * @param sources
+	 *            The fully qualified names of the classes, each followed by
+	 *            its source code
+	 * @return The folder containing the compiled classes
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private File compile(String... sources) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		File src = folder.newFolder();
+		File out = folder.newFolder();
+		String[] args = new String[sources.length / 2 + 2];
+		args[0] = "-d";
+		args[1] = out.getPath();
+		for (int i = 0; i < sources.length; i += 2) {
+			File file = new File(src, sources[i].replace('.', '/').concat(".java"));
+			file.getParentFile().mkdirs();
+			Writer writer = new OutputStreamWriter(new FileOutputStream(file), CacheFiles.UTF8);
+			try {
+				writer.write(sources[i + 1]);
+			} finally {
+				writer.close();
+			}
+			args[i / 2 + 2] = file.getPath();
+		}
+		assertEquals(0, compiler.run(null, null, null, args));
+		return out;
+	}
+
+	/**
+	 * Puts a compiled class in a jar by itself
+	 * 
+	 * @param classes
+	 *            The folder containing the compiled class
+	 * @param name
+	 *            The fully qualified name of the class
+	 * @return The jar
+	 * @since 1.0.0
+	 * @throws IOException
+	 *             If an I/O error has occurred
+	 */
+	private File createJar(File classes, String name) throws IOException {
+		String path = name.replace('.', '/').concat(".class");
+		File jar = folder.newFile(name.concat(".jar"));
+		FileInputStream in = new FileInputStream(new File(classes, path));
+		JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+		try {
+			out.putNextEntry(new JarEntry(path));
+			out.write(CacheFiles.readFully(in));
+			out.closeEntry();
+		} finally {
+			out.close();
+			in.close();
+		}
+		return jar;
+	}
+
+	/**
+	 * Tests that a premain is loaded with the class loader that it is given,
+	 * so it can use the classes in a jar that was injected into it
+	 * 
+	 * @since 1.0.0
+	 * @throws Exception
+	 *             If an error occurs
+	 */
+	@Test
+	public void testPremainUsesInjectedJar() throws Exception {
+		File classes = compile("premaintest.dep.Helper",
+				"package premaintest.dep; public class Helper { public static String value() { return \"injected\"; } }",
+				"premaintest.app.Premain",
+				"package premaintest.app; public class Premain { public static void main(String[] args) { "
+						+ "args[0] = premaintest.dep.Helper.value(); } }");
+		File app = createJar(classes, "premaintest.app.Premain");
+		File dep = createJar(classes, "premaintest.dep.Helper");
+		DependencyClassLoader loader = new DependencyClassLoader(PremainScheduleTest.class.getClassLoader());
+		try {
+			loader.addFile(app);
+			loader.addFile(dep);
+			PremainSchedule schedule = new PremainSchedule();
+			schedule.add(new PremainSchedule.Step("10-test",
+					new ByteArrayInputStream("premaintest.app.Premain\n".getBytes(CacheFiles.UTF8))));
+			String[] args = new String[1];
+			schedule.run(args, loader);
+			assertEquals("injected", args[0]);
+		} finally {
+			loader.close();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.github.zachdeibert.mavendependencyruntime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link Version} is ordered the same way as the
+ * <code>ComparableVersion</code> of Maven 3.9
+ * 
+ * @author Zach Deibert
+ * @since 1.0.0
+ */
+public class VersionTest {
+	/**
+	 * Checks that each version sorts before the next one
+	 * 
+	 * @param versions
+	 *            The versions, in ascending order
+	 * @since 1.0.0
+	 */
+	private static void assertOrder(String... versions) {
+		for (int i = 1; i < versions.length; ++i) {
+			Version low = new Version(versions[i - 1]);
+			Version high = new Version(versions[i]);
+			assertTrue(String.format("%s < %s", low, high), low.compareTo(high) < 0);
+			assertTrue(String.format("%s > %s", high, low), high.compareTo(low) > 0);
+		}
+	}
+
+	/**
+	 * Checks that two versions are equal and have the same hash code
+	 * 
+	 * @param a
+	 *            The first version
+	 * @param b
+	 *            The second version
+	 * @since 1.0.0
+	 */
+	private static void assertSame(String a, String b) {
+		Version first = new Version(a);
+		Version second = new Version(b);
+		assertEquals(String.format("%s = %s", a, b), 0, first.compareTo(second));
+		assertEquals(first, second);
+		assertEquals(first.hashCode(), second.hashCode());
+	}
+
+	/**
+	 * Tests the order of numeric versions
+	 * 
+	 * @since 1.0.0
+	 */
+	@Test
+	public void testNumbers() {
+		assertOrder("1", "1.1", "1.2.3", "1.10", "2", "10", "12345678901234567890", "12345678901234567891");
+		assertSame("1", "1.0.0");
+		assertSame("1.0", "1-0");
+		assertSame("0012345678901234567890", "12345678901234567890");
+	}
+
+	/**
+	 * Tests the order of the qualifiers that Maven knows about
+	 * 
+	 * @since 1.0.0
+	 */
+	@Test
+	public void testQualifiers() {
+		assertOrder("1-alpha", "1-beta", "1-milestone", "1-rc", "1-snapshot", "1", "1-sp", "1-foo");
+		assertSame("1-a1", "1-alpha-1");
+		assertSame("1-cr", "1-rc");
+		assertSame("1-ga", "1");
+		assertSame("1-final", "1.release");
+	}
+
+	/**
+	 * Tests qualifiers after a <code>.</code> separator, which start a
+	 * sub-list just like ones after a <code>-</code>
+	 * 
+	 * @since 1.0.0
+	 */
+	@Test
+	public void testQualifiersAfterDot() {
+		assertOrder("2.0.0.Beta1", "2.0-RC2");
+		assertOrder("1.0.RC1", "1.0");
+		assertOrder("3.0.0.M1", "3.0.0");
+		assertOrder("1.alpha", "1-beta");
+		assertOrder("4.1.99.Final", "4.1.100.Final");
+		assertSame("1.alpha", "1-alpha");
+		assertSame("1.0.0.Final", "1");
+		assertSame("3.0.0.M1", "3.0.0-M1");
+		assertSame("1.Alpha1", "1-alpha-1");
+	}
+}